@@ -1,6 +1,8 @@
 package com.rigiresearch.fitness;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,7 +17,13 @@ import lombok.experimental.Accessors;
  * @since 0.1.0
  */
 public final class CompositeFitnessFunction
-    implements FitnessFunction<CompositeFitnessFunction.CompositeArgument> {
+    implements FitnessFunction<CompositeFitnessFunction.CompositeArgument>,
+        Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
 
     /**
      * Error message for unimplemented methods.
@@ -44,6 +52,14 @@ public final class CompositeFitnessFunction
         this.pairs = new ArrayList<>(CompositeFitnessFunction.INITIAL_CAPACITY);
     }
 
+    /**
+     * Creates a function from pairs that have already been validated.
+     * @param pairs The pairs function-weight
+     */
+    CompositeFitnessFunction(final List<CompositeFitnessFunction.Pair> pairs) {
+        this.pairs = new ArrayList<>(pairs);
+    }
+
     /**
      * Adds a fitness function to this composite function.
      * @param function The fitness function
@@ -70,15 +86,19 @@ public final class CompositeFitnessFunction
             map.putIfAbsent(clazz, 0);
             map.put(clazz, map.get(clazz) + 1);
         }
+        final String error;
         if (Math.abs(1.0 - sum) > CompositeFitnessFunction.EPSILON) {
-            throw new IllegalStateException(
-                String.format("The weights must sum 1.0. Current value is %f", sum)
+            error = String.format(
+                "The weights must sum 1.0. Current value is %f", sum
             );
+        } else if (map.values().stream().anyMatch(v -> v >= 2)) {
+            error = "There are at least two functions handling the same argument type";
+        } else {
+            error = null;
         }
-        if (map.values().stream().anyMatch(v -> v >= 2)) {
-            throw new IllegalStateException(
-                "There are at least two functions handling the same argument type"
-            );
+        if (error != null) {
+            FitnessEvents.ValidationFailure.emit(this.pairs.size(), error);
+            throw new IllegalStateException(error);
         }
         return this;
     }
@@ -98,7 +118,16 @@ public final class CompositeFitnessFunction
         double result = 0.0;
         for (final FitnessFunction.Argument arg : args) {
             final CompositeFitnessFunction.Pair pair = this.pair(arg.getClass());
+            final FitnessEvents.ObjectiveEvaluation event =
+                new FitnessEvents.ObjectiveEvaluation();
+            final boolean profiled = event.isEnabled() && FitnessEvents.sampled();
+            if (profiled) {
+                event.begin();
+            }
             final double value = pair.function().evaluateNormalized(arg.values());
+            if (profiled) {
+                event.commit(pair.function(), pair.weight());
+            }
             result += pair.weight() * value;
         }
         return result;
@@ -115,6 +144,14 @@ public final class CompositeFitnessFunction
         return CompositeFitnessFunction.CompositeArgument.class;
     }
 
+    /**
+     * The pairs function-weight of this function.
+     * @return An unmodifiable list
+     */
+    List<CompositeFitnessFunction.Pair> pairs() {
+        return Collections.unmodifiableList(this.pairs);
+    }
+
     /**
      * Finds a pair by the type of argument that the function handles.
      * This assumes that only one function handles a particular argument type.
@@ -142,7 +179,12 @@ public final class CompositeFitnessFunction
     @Accessors(fluent = true)
     @Getter
     @RequiredArgsConstructor
-    private static final class Pair {
+    static final class Pair implements Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
 
         /**
          * The fitness function.
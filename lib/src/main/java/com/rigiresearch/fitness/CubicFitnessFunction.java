@@ -1,5 +1,6 @@
 package com.rigiresearch.fitness;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import lombok.Getter;
 import lombok.experimental.Accessors;
@@ -11,7 +12,13 @@ import lombok.experimental.Accessors;
  * @since 0.1.0
  */
 public final class CubicFitnessFunction
-    implements FitnessFunction<CubicFitnessFunction.CubicFunctionArgument> {
+    implements FitnessFunction<CubicFitnessFunction.CubicFunctionArgument>,
+        Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
 
     /**
      * Error message for unimplemented methods.
@@ -69,10 +76,15 @@ public final class CubicFitnessFunction
         if (CubicFitnessFunction.lessThanOrEqual(this.a, x) &&
             CubicFitnessFunction.lessThanOrEqual(x, this.c)) {
             y = -10.0 * StrictMath.pow(x.subtract(this.b).doubleValue(), 3.0);
-        } else if (x.compareTo(this.a) < 0) {
-            y = Double.NEGATIVE_INFINITY;
         } else {
-            y = Double.POSITIVE_INFINITY;
+            FitnessEvents.OutOfRange.emit(
+                this, args[0], this.a.doubleValue(), this.c.doubleValue()
+            );
+            if (x.compareTo(this.a) < 0) {
+                y = Double.NEGATIVE_INFINITY;
+            } else {
+                y = Double.POSITIVE_INFINITY;
+            }
         }
         return y;
     }
@@ -116,6 +128,103 @@ public final class CubicFitnessFunction
         return normalized;
     }
 
+    /**
+     * Precomputes the normalized curve over {@code [a, c]} into lookup
+     * tables. Since {@code a}, {@code b} and {@code c} are fixed, the tables
+     * can be built once and shared across threads.
+     *
+     * <p>The normalized curve is {@code u^3} on {@code [a, b]} and
+     * {@code -v^3} on {@code [b, c]}, where {@code u} and {@code v} are the
+     * distances to {@code b} relative to the length of each part. Each part is
+     * therefore tabulated separately, with the same number of intervals, which
+     * is derived from a closed-form bound on the interpolation error instead
+     * of being measured. The table over {@code [b, c]} delegates inputs below
+     * {@code b} to the table over {@code [a, b]}.</p>
+     *
+     * @param tolerance The maximum absolute error
+     * @param interpolation The interpolation between table nodes
+     * @return A tabulated version of this function
+     */
+    public TabulatedFitnessFunction<CubicFitnessFunction.CubicFunctionArgument>
+        tabulate(final double tolerance,
+        final TabulatedFitnessFunction.Interpolation interpolation) {
+        final double lower = this.a();
+        final double middle = this.b();
+        final double upper = this.c();
+        if (!(lower <= middle && middle <= upper && lower < upper)
+            || Double.isInfinite(upper - lower)) {
+            throw new IllegalArgumentException(
+                String.format("Invalid domain [%f, %f, %f]", lower, middle, upper)
+            );
+        }
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException(
+                String.format("Tolerance must be positive. Current value is %f", tolerance)
+            );
+        }
+        int size = TabulatedFitnessFunction.MIN_INTERVALS;
+        while (CubicFitnessFunction.bound(interpolation, size) > tolerance) {
+            size *= 2;
+            if (size > TabulatedFitnessFunction.MAX_INTERVALS) {
+                throw new IllegalArgumentException(
+                    String.format(
+                        "Cannot reach an error of %e with %d intervals",
+                        tolerance,
+                        TabulatedFitnessFunction.MAX_INTERVALS
+                    )
+                );
+            }
+        }
+        final double error = CubicFitnessFunction.bound(interpolation, size);
+        final TabulatedFitnessFunction<CubicFitnessFunction.CubicFunctionArgument>
+            table;
+        if (middle == upper) {
+            table = new TabulatedFitnessFunction<>(
+                this, lower, middle, interpolation, size, error
+            );
+        } else if (lower == middle) {
+            table = new TabulatedFitnessFunction<>(
+                this, middle, upper, interpolation, size, error
+            );
+        } else {
+            table = new TabulatedFitnessFunction<>(
+                new TabulatedFitnessFunction<>(
+                    this, lower, middle, interpolation, size, error
+                ),
+                middle,
+                upper,
+                interpolation,
+                size,
+                error
+            );
+        }
+        return table;
+    }
+
+    /**
+     * The lower bound in the x axis.
+     * @return A double value
+     */
+    double a() {
+        return this.a.doubleValue();
+    }
+
+    /**
+     * A value between a and c.
+     * @return A double value
+     */
+    double b() {
+        return this.b.doubleValue();
+    }
+
+    /**
+     * The upper bound in the x axis.
+     * @return A double value
+     */
+    double c() {
+        return this.c.doubleValue();
+    }
+
     @Override
     public double evaluate(final FitnessFunction.Argument... args) {
         throw new UnsupportedOperationException(CubicFitnessFunction.ERROR);
@@ -131,6 +240,40 @@ public final class CubicFitnessFunction
         return CubicFitnessFunction.CubicFunctionArgument.class;
     }
 
+    /**
+     * Bounds the error of interpolating {@code u^3} over {@code [0, 1]} with a
+     * number of equally spaced intervals of length {@code h}.
+     * <ul>
+     *     <li>Linear: {@code h^2 max|f''| / 8}, where {@code f''(u) = 6u}.</li>
+     *     <li>Cubic: the slopes estimated by finite differences are off by at
+     *     most {@code 2h^3} (a third of {@code h^3 f'''}, at the boundaries),
+     *     and the Hermite basis weighs them by at most {@code 1/4}. The
+     *     interpolation is otherwise exact for cubic polynomials.</li>
+     * </ul>
+     * @param interpolation The interpolation between table nodes
+     * @param size The number of intervals
+     * @return The maximum absolute error
+     */
+    private static double bound(
+        final TabulatedFitnessFunction.Interpolation interpolation,
+        final int size) {
+        final double h = 1.0 / size;
+        final double bound;
+        switch (interpolation) {
+            case LINEAR:
+                bound = h * h * 6.0 / 8.0;
+                break;
+            case CUBIC:
+                bound = 2.0 * h * h * h / 4.0;
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("Unknown interpolation %s", interpolation)
+                );
+        }
+        return bound;
+    }
+
     /**
      * The less-than-or-equal relational operator.
      * @param first The first argument of the relational operator
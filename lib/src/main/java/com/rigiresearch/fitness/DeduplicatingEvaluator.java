@@ -0,0 +1,277 @@
+package com.rigiresearch.fitness;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Evaluates a batch of argument rows (e.g., a generation) evaluating each
+ * distinct row only once. Rows are grouped with an open-addressing hash table
+ * that only lives for the duration of the batch, so there is no eviction
+ * policy to tune; the distinct rows are then evaluated in parallel and their
+ * scores are copied back to every duplicate.
+ *
+ * <p>Rows are compared by the bit patterns of their values (see
+ * {@link Arrays#equals(double[], double[])}), and argument rows also by the
+ * class of each argument.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class DeduplicatingEvaluator {
+
+    /**
+     * An empty slot in the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The fitness function to evaluate.
+     */
+    private final FitnessFunction<?> function;
+
+    /**
+     * The number of rows received so far.
+     */
+    private final LongAdder rows;
+
+    /**
+     * The number of function evaluations performed so far.
+     */
+    private final LongAdder evaluations;
+
+    /**
+     * Default constructor.
+     * @param function The fitness function to evaluate
+     */
+    public DeduplicatingEvaluator(final FitnessFunction<?> function) {
+        this.function = function;
+        this.rows = new LongAdder();
+        this.evaluations = new LongAdder();
+    }
+
+    /**
+     * Evaluates each row with {@link FitnessFunction#evaluate(double...)}.
+     * @param batch The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluate(final double[]... batch) {
+        return this.schedule(
+            batch,
+            Arrays::hashCode,
+            Arrays::equals,
+            this.function::evaluate
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluateNormalized(double...)}.
+     * @param batch The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluateNormalized(final double[]... batch) {
+        return this.schedule(
+            batch,
+            Arrays::hashCode,
+            Arrays::equals,
+            this.function::evaluateNormalized
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluate(FitnessFunction.Argument...)}.
+     * @param batch The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluate(final FitnessFunction.Argument[]... batch) {
+        return this.schedule(
+            batch,
+            DeduplicatingEvaluator::hash,
+            DeduplicatingEvaluator::equal,
+            this.function::evaluate
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluateNormalized(FitnessFunction.Argument...)}.
+     * @param batch The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluateNormalized(
+        final FitnessFunction.Argument[]... batch) {
+        return this.schedule(
+            batch,
+            DeduplicatingEvaluator::hash,
+            DeduplicatingEvaluator::equal,
+            this.function::evaluateNormalized
+        );
+    }
+
+    /**
+     * The duplicate statistics accumulated since this evaluator was created.
+     * @return A snapshot of the statistics
+     */
+    public DeduplicatingEvaluator.Statistics statistics() {
+        return new DeduplicatingEvaluator.Statistics(
+            this.rows.sum(),
+            this.evaluations.sum()
+        );
+    }
+
+    /**
+     * Groups identical rows, evaluates one representative per group and
+     * copies its score to the rest of the group.
+     * @param batch The rows to evaluate
+     * @param hasher Computes the hash code of a row
+     * @param equality Compares two rows
+     * @param scorer Evaluates a row
+     * @param <R> The type of row
+     * @return The score of each row, in the same order
+     */
+    private <R> double[] schedule(final R[] batch, final ToIntFunction<R> hasher,
+        final BiPredicate<R, R> equality, final ToDoubleFunction<R> scorer) {
+        final FitnessEvents.BatchEvaluation event =
+            new FitnessEvents.BatchEvaluation();
+        event.begin();
+        final int length = batch.length;
+        final int[] hashes = new int[length];
+        IntStream.range(0, length)
+            .parallel()
+            .forEach(i -> hashes[i] = hasher.applyAsInt(batch[i]));
+        // A power of two with at most 50% load factor
+        final int capacity = Integer.highestOneBit(Math.max(length, 1)) << 2;
+        final int mask = capacity - 1;
+        final int[] table = new int[capacity];
+        Arrays.fill(table, DeduplicatingEvaluator.EMPTY);
+        // Position of each row's group in the array of distinct rows
+        final int[] groups = new int[length];
+        final int[] distinct = new int[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = DeduplicatingEvaluator.spread(hashes[i]) & mask;
+            while (true) {
+                final int group = table[slot];
+                if (group == DeduplicatingEvaluator.EMPTY) {
+                    table[slot] = count;
+                    distinct[count] = i;
+                    groups[i] = count;
+                    count++;
+                    break;
+                }
+                final int representative = distinct[group];
+                if (hashes[representative] == hashes[i]
+                    && equality.test(batch[representative], batch[i])) {
+                    groups[i] = group;
+                    break;
+                }
+                slot = slot + 1 & mask;
+            }
+        }
+        final double[] unique = new double[count];
+        IntStream.range(0, count)
+            .parallel()
+            .forEach(j -> unique[j] = scorer.applyAsDouble(batch[distinct[j]]));
+        final double[] scores = new double[length];
+        for (int i = 0; i < length; i++) {
+            scores[i] = unique[groups[i]];
+        }
+        this.rows.add(length);
+        this.evaluations.add(count);
+        event.commit(this, this.function, length, count);
+        return scores;
+    }
+
+    /**
+     * Spreads the high bits of a hash code to the low bits used to index the
+     * hash table.
+     * @param hash The hash code
+     * @return A mixed hash code
+     */
+    private static int spread(final int hash) {
+        final int mixed = hash * 0x9E3779B9;
+        return mixed ^ mixed >>> 16;
+    }
+
+    /**
+     * Computes the hash code of a row of arguments.
+     * @param row The arguments
+     * @return A hash code
+     */
+    private static int hash(final FitnessFunction.Argument... row) {
+        int result = 1;
+        for (final FitnessFunction.Argument arg : row) {
+            result = 31 * result + arg.getClass().hashCode();
+            result = 31 * result + Arrays.hashCode(arg.values());
+        }
+        return result;
+    }
+
+    /**
+     * Compares two rows of arguments.
+     * @param first The first row
+     * @param second The second row
+     * @return Whether both rows have the same argument types and values
+     */
+    private static boolean equal(final FitnessFunction.Argument[] first,
+        final FitnessFunction.Argument... second) {
+        boolean result = first.length == second.length;
+        for (int i = 0; result && i < first.length; i++) {
+            result = first[i].getClass().equals(second[i].getClass())
+                && Arrays.equals(first[i].values(), second[i].values());
+        }
+        return result;
+    }
+
+    /**
+     * Duplicate statistics.
+     */
+    @Accessors(fluent = true)
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Statistics {
+
+        /**
+         * The number of rows received.
+         */
+        private final long rows;
+
+        /**
+         * The number of function evaluations performed.
+         */
+        private final long evaluations;
+
+        /**
+         * The number of rows whose score was copied from an identical row.
+         * @return A positive number, including 0
+         */
+        public long duplicates() {
+            return this.rows - this.evaluations;
+        }
+
+        /**
+         * The fraction of rows that did not need an evaluation.
+         * @return A number between 0 and 1
+         */
+        public double duplicateRatio() {
+            final double ratio;
+            if (this.rows == 0L) {
+                ratio = 0.0;
+            } else {
+                ratio = (double) this.duplicates() / (double) this.rows;
+            }
+            return ratio;
+        }
+
+    }
+
+}
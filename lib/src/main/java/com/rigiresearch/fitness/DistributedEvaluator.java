@@ -0,0 +1,679 @@
+package com.rigiresearch.fitness;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Spreads the evaluation of a fitness function across several
+ * {@link EvaluationWorker} processes. Each worker receives the function
+ * definition once per connection and then batches of rows, which are sized
+ * by guided self-scheduling: every idle connection claims a fraction of the
+ * remaining rows, so faster workers end up processing more batches and
+ * batches shrink towards the end of the run to balance the tail.
+ *
+ * <p>When a worker fails (e.g., its process dies), its batch is retried on
+ * another worker, up to the maximum number of attempts. Errors thrown by the
+ * function itself are not retried. Scores are returned in the same order as
+ * the rows.</p>
+ *
+ * <p>A worker that does not answer a batch within the read timeout (one
+ * minute by default) is considered failed, so the timeout must be longer than
+ * the time a worker takes to evaluate the largest batch. Disabling the timeout
+ * means that hung workers are not detected and block the evaluation.</p>
+ *
+ * <p>The function is shipped with {@link FitnessFunctionFormat}, so
+ * user-defined functions, including those composed by
+ * {@link CompositeFitnessFunction}, must be {@link java.io.Serializable}.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class DistributedEvaluator implements Closeable {
+
+    /**
+     * Default minimum number of rows per batch.
+     */
+    private static final int MINIMUM_BATCH = 16;
+
+    /**
+     * Default maximum number of rows per batch.
+     */
+    private static final int MAXIMUM_BATCH = 4096;
+
+    /**
+     * Default number of times a batch is sent before giving up.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Default socket read timeout in milliseconds.
+     */
+    private static final int TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * How long an idle connection waits for a failed batch to retry.
+     */
+    private static final long POLL_MILLIS = 50L;
+
+    /**
+     * Size of the buffers wrapping the socket streams.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The fitness function to evaluate.
+     */
+    private final FitnessFunction<?> function;
+
+    /**
+     * The serialized function.
+     */
+    private final byte[] definition;
+
+    /**
+     * One connection per worker.
+     */
+    private final List<DistributedEvaluator.Connection> connections;
+
+    /**
+     * Runs one task per connection during an evaluation.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Minimum number of rows per batch.
+     */
+    private int minimum;
+
+    /**
+     * Maximum number of rows per batch.
+     */
+    private int maximum;
+
+    /**
+     * Number of times a batch is sent before giving up.
+     */
+    private int attempts;
+
+    /**
+     * Socket read timeout in milliseconds, or 0 to wait forever.
+     */
+    private int timeout;
+
+    /**
+     * Default constructor.
+     * @param function The fitness function to evaluate
+     */
+    public DistributedEvaluator(final FitnessFunction<?> function) {
+        this.function = function;
+        this.definition = EvaluationProtocol.define(function);
+        this.connections = new ArrayList<>(1);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.minimum = DistributedEvaluator.MINIMUM_BATCH;
+        this.maximum = DistributedEvaluator.MAXIMUM_BATCH;
+        this.attempts = DistributedEvaluator.MAX_ATTEMPTS;
+        this.timeout = DistributedEvaluator.TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Adds a worker listening on the loopback interface.
+     * @param port The worker's port
+     * @return This
+     */
+    public DistributedEvaluator withWorker(final int port) {
+        return this.withWorker(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+        );
+    }
+
+    /**
+     * Adds a worker.
+     * @param address The worker's address
+     * @return This
+     */
+    public synchronized DistributedEvaluator withWorker(
+        final InetSocketAddress address) {
+        this.connections.add(new DistributedEvaluator.Connection(address));
+        return this;
+    }
+
+    /**
+     * Sets the bounds of the batch size.
+     * @param min The minimum number of rows per batch
+     * @param max The maximum number of rows per batch
+     * @return This
+     */
+    public synchronized DistributedEvaluator withBatchSize(final int min,
+        final int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException(
+                String.format("Invalid batch size bounds [%d, %d]", min, max)
+            );
+        }
+        this.minimum = min;
+        this.maximum = max;
+        return this;
+    }
+
+    /**
+     * Sets the number of times a batch is sent before giving up.
+     * @param max The maximum number of attempts
+     * @return This
+     */
+    public synchronized DistributedEvaluator withMaxAttempts(final int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException(
+                String.format("Attempts must be positive. Current value is %d", max)
+            );
+        }
+        this.attempts = max;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for a worker to answer before considering it
+     * failed. A timeout of 0 waits forever, in which case hung workers are not
+     * detected.
+     * @param millis The timeout in milliseconds, or 0 to wait forever
+     * @return This
+     */
+    public synchronized DistributedEvaluator withTimeout(final int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException(
+                String.format("Timeout must not be negative. Current value is %d", millis)
+            );
+        }
+        this.timeout = millis;
+        return this;
+    }
+
+    /**
+     * Evaluates each row with {@link FitnessFunction#evaluate(double...)}.
+     * @param rows The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluate(final double[]... rows) {
+        return this.schedule(
+            rows.length,
+            (output, from, to) ->
+                EvaluationProtocol.writeRows(output, false, rows, from, to)
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluateNormalized(double...)}.
+     * @param rows The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluateNormalized(final double[]... rows) {
+        return this.schedule(
+            rows.length,
+            (output, from, to) ->
+                EvaluationProtocol.writeRows(output, true, rows, from, to)
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluate(FitnessFunction.Argument...)}.
+     * @param rows The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluate(final FitnessFunction.Argument[]... rows) {
+        return this.schedule(
+            rows.length,
+            (output, from, to) ->
+                EvaluationProtocol.writeRows(output, false, rows, from, to)
+        );
+    }
+
+    /**
+     * Evaluates each row with
+     * {@link FitnessFunction#evaluateNormalized(FitnessFunction.Argument...)}.
+     * @param rows The argument rows
+     * @return The score of each row, in the same order
+     */
+    public double[] evaluateNormalized(
+        final FitnessFunction.Argument[]... rows) {
+        return this.schedule(
+            rows.length,
+            (output, from, to) ->
+                EvaluationProtocol.writeRows(output, true, rows, from, to)
+        );
+    }
+
+    @Override
+    public synchronized void close() {
+        this.executor.shutdownNow();
+        for (final DistributedEvaluator.Connection connection : this.connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Distributes the rows across the workers and waits for all the scores.
+     * @param length The number of rows
+     * @param sender Writes an EVALUATE message for a range of rows
+     * @return The scores
+     */
+    private synchronized double[] schedule(final int length,
+        final DistributedEvaluator.Sender sender) {
+        if (this.connections.isEmpty()) {
+            throw new IllegalStateException("No worker has been registered");
+        }
+        final DistributedEvaluator.Run run =
+            new DistributedEvaluator.Run(length, this.connections.size());
+        if (length == 0) {
+            return run.scores;
+        }
+        final FitnessEvents.BatchEvaluation event =
+            new FitnessEvents.BatchEvaluation();
+        event.begin();
+        final List<Future<?>> futures = new ArrayList<>(this.connections.size());
+        for (final DistributedEvaluator.Connection connection : this.connections) {
+            futures.add(
+                this.executor.submit(() -> this.work(connection, sender, run))
+            );
+        }
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                run.fail(new IllegalStateException(exception));
+            } catch (final ExecutionException exception) {
+                run.fail(new IllegalStateException(exception.getCause()));
+            }
+        }
+        final RuntimeException failure = run.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+        event.commit(this, this.function, length, length);
+        return run.scores;
+    }
+
+    /**
+     * Sends batches through a connection until all rows are evaluated, the
+     * run fails, or the connection breaks.
+     * @param connection The worker connection
+     * @param sender Writes an EVALUATE message for a range of rows
+     * @param run The state of the evaluation
+     */
+    private void work(final DistributedEvaluator.Connection connection,
+        final DistributedEvaluator.Sender sender,
+        final DistributedEvaluator.Run run) {
+        try {
+            connection.open(this.definition, this.timeout);
+        } catch (final EvaluationProtocol.RemoteException exception) {
+            connection.close();
+            run.fail(
+                new IllegalArgumentException(
+                    String.format(
+                        "Worker %s rejected the function: %s",
+                        connection.address,
+                        exception.getMessage()
+                    )
+                )
+            );
+            return;
+        } catch (final IOException exception) {
+            connection.close();
+            run.lost(null, exception);
+            return;
+        }
+        while (true) {
+            final DistributedEvaluator.Batch batch = run.next(
+                this.minimum, this.maximum
+            );
+            if (batch == null) {
+                break;
+            }
+            try {
+                sender.send(connection.output, batch.from, batch.to);
+                EvaluationProtocol.readResult(
+                    connection.input,
+                    run.scores,
+                    batch.from,
+                    batch.to - batch.from
+                );
+                run.completed(batch);
+            } catch (final EvaluationProtocol.RemoteException exception) {
+                run.fail(
+                    new IllegalStateException(
+                        String.format(
+                            "Worker %s failed to evaluate rows [%d, %d): %s",
+                            connection.address,
+                            batch.from,
+                            batch.to,
+                            exception.getMessage()
+                        )
+                    )
+                );
+                break;
+            } catch (final IOException exception) {
+                connection.close();
+                run.lost(batch, exception);
+                break;
+            } catch (final RuntimeException exception) {
+                // The message may be half-written, so the connection is out of
+                // sync; rows that cannot be sent would fail on every worker
+                connection.close();
+                run.fail(
+                    new IllegalStateException(
+                        String.format(
+                            "Cannot evaluate rows [%d, %d) on worker %s",
+                            batch.from,
+                            batch.to,
+                            connection.address
+                        ),
+                        exception
+                    )
+                );
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes an EVALUATE message for a range of rows.
+     */
+    @FunctionalInterface
+    private interface Sender {
+
+        /**
+         * Writes the message.
+         * @param output The output stream
+         * @param from The first row, inclusive
+         * @param to The last row, exclusive
+         * @throws IOException If something bad happens writing the message
+         */
+        void send(DataOutputStream output, int from, int to) throws IOException;
+
+    }
+
+    /**
+     * A range of rows.
+     */
+    private static final class Batch {
+
+        /**
+         * The first row, inclusive.
+         */
+        private final int from;
+
+        /**
+         * The last row, exclusive.
+         */
+        private final int to;
+
+        /**
+         * The number of times this batch has been sent.
+         */
+        private final int attempt;
+
+        /**
+         * Default constructor.
+         * @param from The first row, inclusive
+         * @param to The last row, exclusive
+         * @param attempt The number of times this batch has been sent
+         */
+        Batch(final int from, final int to, final int attempt) {
+            this.from = from;
+            this.to = to;
+            this.attempt = attempt;
+        }
+
+    }
+
+    /**
+     * The state of one evaluation, shared by the connection tasks.
+     */
+    private final class Run {
+
+        /**
+         * The scores.
+         */
+        private final double[] scores;
+
+        /**
+         * The first row that has not been claimed yet.
+         */
+        private final AtomicInteger cursor;
+
+        /**
+         * The number of rows evaluated so far.
+         */
+        private final AtomicInteger done;
+
+        /**
+         * The number of connections that have not failed.
+         */
+        private final AtomicInteger live;
+
+        /**
+         * Batches whose worker failed.
+         */
+        private final LinkedBlockingQueue<DistributedEvaluator.Batch> retries;
+
+        /**
+         * The first error that aborted this run.
+         */
+        private final AtomicReference<RuntimeException> failure;
+
+        /**
+         * Default constructor.
+         * @param length The number of rows
+         * @param workers The number of workers
+         */
+        Run(final int length, final int workers) {
+            this.scores = new double[length];
+            this.cursor = new AtomicInteger();
+            this.done = new AtomicInteger();
+            this.live = new AtomicInteger(workers);
+            this.retries = new LinkedBlockingQueue<>();
+            this.failure = new AtomicReference<>();
+        }
+
+        /**
+         * Claims the next batch, preferring failed batches. Waits while other
+         * connections are still working, in case one of them fails.
+         * @param min The minimum number of rows per batch
+         * @param max The maximum number of rows per batch
+         * @return A batch or {@code null} if there is nothing left to do
+         */
+        DistributedEvaluator.Batch next(final int min, final int max) {
+            final int length = this.scores.length;
+            DistributedEvaluator.Batch batch = this.retries.poll();
+            while (batch == null && this.failure.get() == null) {
+                final int from = this.cursor.get();
+                if (from < length) {
+                    final int size = Math.max(
+                        min,
+                        Math.min(
+                            max,
+                            (length - from) / (2 * Math.max(1, this.live.get()))
+                        )
+                    );
+                    final int to = Math.min(length, from + size);
+                    if (this.cursor.compareAndSet(from, to)) {
+                        batch = new DistributedEvaluator.Batch(from, to, 1);
+                    }
+                } else if (this.done.get() < length) {
+                    try {
+                        batch = this.retries.poll(
+                            DistributedEvaluator.POLL_MILLIS,
+                            TimeUnit.MILLISECONDS
+                        );
+                    } catch (final InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        this.fail(new IllegalStateException(exception));
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (this.failure.get() != null) {
+                batch = null;
+            }
+            return batch;
+        }
+
+        /**
+         * Records an evaluated batch.
+         * @param batch The batch
+         */
+        void completed(final DistributedEvaluator.Batch batch) {
+            this.done.addAndGet(batch.to - batch.from);
+        }
+
+        /**
+         * Records a failed connection and schedules its batch for retry.
+         * @param batch The batch being evaluated, if any
+         * @param cause The connection error
+         */
+        void lost(final DistributedEvaluator.Batch batch,
+            final IOException cause) {
+            if (batch != null) {
+                if (batch.attempt >= DistributedEvaluator.this.attempts) {
+                    this.fail(
+                        new IllegalStateException(
+                            String.format(
+                                "Rows [%d, %d) failed after %d attempts",
+                                batch.from,
+                                batch.to,
+                                batch.attempt
+                            ),
+                            cause
+                        )
+                    );
+                } else {
+                    this.retries.add(
+                        new DistributedEvaluator.Batch(
+                            batch.from, batch.to, batch.attempt + 1
+                        )
+                    );
+                }
+            }
+            if (this.live.decrementAndGet() == 0
+                && this.done.get() < this.scores.length) {
+                this.fail(
+                    new IllegalStateException("No worker is available", cause)
+                );
+            }
+        }
+
+        /**
+         * Aborts this run.
+         * @param exception The error to report
+         */
+        void fail(final RuntimeException exception) {
+            this.failure.compareAndSet(null, exception);
+        }
+
+    }
+
+    /**
+     * A connection to a worker, opened lazily and reopened after a failure.
+     */
+    private static final class Connection {
+
+        /**
+         * The worker's address.
+         */
+        private final InetSocketAddress address;
+
+        /**
+         * The socket, or {@code null} when closed.
+         */
+        private Socket socket;
+
+        /**
+         * The socket's input stream.
+         */
+        private DataInputStream input;
+
+        /**
+         * The socket's output stream.
+         */
+        private DataOutputStream output;
+
+        /**
+         * Default constructor.
+         * @param address The worker's address
+         */
+        Connection(final InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Connects to the worker and sends the function definition, unless
+         * already connected.
+         * @param definition The serialized function
+         * @param timeout The read timeout in milliseconds
+         * @throws IOException If the worker cannot be reached
+         */
+        void open(final byte[] definition, final int timeout)
+            throws IOException {
+            if (this.socket != null) {
+                this.socket.setSoTimeout(timeout);
+                return;
+            }
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.setSoTimeout(timeout);
+            this.socket.connect(this.address, timeout);
+            this.input = new DataInputStream(
+                new BufferedInputStream(
+                    this.socket.getInputStream(), DistributedEvaluator.BUFFER_SIZE
+                )
+            );
+            this.output = new DataOutputStream(
+                new BufferedOutputStream(
+                    this.socket.getOutputStream(), DistributedEvaluator.BUFFER_SIZE
+                )
+            );
+            EvaluationProtocol.writeHello(this.output, definition);
+            EvaluationProtocol.readResult(this.input, new double[0], 0, 0);
+        }
+
+        /**
+         * Closes the socket, ignoring errors.
+         */
+        void close() {
+            if (this.socket != null) {
+                try {
+                    this.socket.close();
+                } catch (final IOException exception) {
+                    // Nothing else to do
+                }
+                this.socket = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,504 @@
+package com.rigiresearch.fitness;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The binary protocol spoken between a {@link DistributedEvaluator} and its
+ * {@link EvaluationWorker}s. Every message starts with a one-byte opcode:
+ * <pre>
+ *     HELLO    magic:int version:byte size:int definition:byte[size]
+ *     EVALUATE mode:byte rows:int payload
+ *     RESULT   rows:int scores:double[rows]
+ *     ERROR    message:utf
+ * </pre>
+ * <p>A plain payload is a sequence of {@code length:int values:double[length]}
+ * rows. An argument payload starts with a table of argument class names,
+ * {@code count:int names:utf[count]}, followed by rows of
+ * {@code arguments:int (type:short length:int values:double[length])*}.
+ * A worker answers HELLO and EVALUATE with either RESULT or ERROR. Function
+ * definitions are encoded with {@link FitnessFunctionFormat}.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+final class EvaluationProtocol {
+
+    /**
+     * Identifies the protocol on the first bytes of a connection.
+     */
+    static final int MAGIC = 0x46495421;
+
+    /**
+     * The protocol version.
+     */
+    static final byte VERSION = 2;
+
+    /**
+     * Sends the function definition.
+     */
+    static final byte HELLO = 1;
+
+    /**
+     * Sends a batch of rows to evaluate.
+     */
+    static final byte EVALUATE = 2;
+
+    /**
+     * Returns the scores of a batch, or acknowledges a HELLO.
+     */
+    static final byte RESULT = 3;
+
+    /**
+     * Reports a failure.
+     */
+    static final byte ERROR = 4;
+
+    /**
+     * Mode flag to use the normalized evaluation.
+     */
+    static final byte NORMALIZED = 1;
+
+    /**
+     * Mode flag for rows of {@link FitnessFunction.Argument}s.
+     */
+    static final byte ARGUMENTS = 2;
+
+    /**
+     * Utility class.
+     */
+    private EvaluationProtocol() {
+        // Nothing to do here
+    }
+
+    /**
+     * Encodes a fitness function.
+     * @param function The function
+     * @return The function definition
+     */
+    static byte[] define(final FitnessFunction<?> function) {
+        return FitnessFunctionFormat.toBinary(function);
+    }
+
+    /**
+     * Decodes a fitness function.
+     * @param definition The function definition
+     * @return The function
+     * @throws EvaluationProtocol.RejectedException If the definition is not
+     *  a valid function
+     */
+    static FitnessFunction<?> function(final byte[] definition)
+        throws EvaluationProtocol.RejectedException {
+        try {
+            return FitnessFunctionFormat.fromBinary(definition);
+        } catch (final IllegalArgumentException exception) {
+            throw new EvaluationProtocol.RejectedException(
+                String.format("Invalid function definition: %s", exception),
+                exception
+            );
+        }
+    }
+
+    /**
+     * Writes the header of a HELLO message.
+     * @param output The output stream
+     * @param definition The function definition
+     * @throws IOException If something bad happens writing the message
+     */
+    static void writeHello(final DataOutputStream output,
+        final byte[] definition) throws IOException {
+        output.writeByte(EvaluationProtocol.HELLO);
+        output.writeInt(EvaluationProtocol.MAGIC);
+        output.writeByte(EvaluationProtocol.VERSION);
+        output.writeInt(definition.length);
+        output.write(definition);
+        output.flush();
+    }
+
+    /**
+     * Writes an EVALUATE message with plain rows.
+     * @param output The output stream
+     * @param normalized Whether to use the normalized evaluation
+     * @param rows The rows
+     * @param from The first row to write, inclusive
+     * @param to The last row to write, exclusive
+     * @throws IOException If something bad happens writing the message
+     */
+    static void writeRows(final DataOutputStream output,
+        final boolean normalized, final double[][] rows, final int from,
+        final int to) throws IOException {
+        output.writeByte(EvaluationProtocol.EVALUATE);
+        output.writeByte(EvaluationProtocol.mode(normalized, false));
+        output.writeInt(to - from);
+        for (int i = from; i < to; i++) {
+            EvaluationProtocol.writeValues(output, rows[i]);
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes an EVALUATE message with argument rows.
+     * @param output The output stream
+     * @param normalized Whether to use the normalized evaluation
+     * @param rows The rows
+     * @param from The first row to write, inclusive
+     * @param to The last row to write, exclusive
+     * @throws IOException If something bad happens writing the message
+     */
+    static void writeRows(final DataOutputStream output,
+        final boolean normalized, final FitnessFunction.Argument[][] rows,
+        final int from, final int to) throws IOException {
+        final Map<Class<?>, Integer> types = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            for (final FitnessFunction.Argument arg : rows[i]) {
+                types.putIfAbsent(arg.getClass(), types.size());
+            }
+        }
+        output.writeByte(EvaluationProtocol.EVALUATE);
+        output.writeByte(EvaluationProtocol.mode(normalized, true));
+        output.writeInt(to - from);
+        output.writeInt(types.size());
+        for (final Class<?> type : types.keySet()) {
+            output.writeUTF(type.getName());
+        }
+        for (int i = from; i < to; i++) {
+            output.writeInt(rows[i].length);
+            for (final FitnessFunction.Argument arg : rows[i]) {
+                output.writeShort(types.get(arg.getClass()));
+                EvaluationProtocol.writeValues(output, arg.values());
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the plain rows of an EVALUATE message.
+     * @param input The input stream
+     * @param count The number of rows
+     * @return The rows
+     * @throws IOException If something bad happens reading the message
+     */
+    static double[][] readRows(final DataInputStream input, final int count)
+        throws IOException {
+        final double[][] rows = new double[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = EvaluationProtocol.readValues(input);
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the argument rows of an EVALUATE message. The whole payload is
+     * consumed before any argument is instantiated, so that a type the
+     * worker cannot rebuild does not leave unread bytes on the stream.
+     * @param input The input stream
+     * @param count The number of rows
+     * @return The raw rows
+     * @throws IOException If something bad happens reading the message
+     */
+    static EvaluationProtocol.ArgumentRows readArguments(
+        final DataInputStream input, final int count) throws IOException {
+        final String[] names = new String[EvaluationProtocol.length(input)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = input.readUTF();
+        }
+        final short[][] types = new short[count][];
+        final double[][][] values = new double[count][][];
+        for (int i = 0; i < count; i++) {
+            final int length = EvaluationProtocol.length(input);
+            types[i] = new short[length];
+            values[i] = new double[length][];
+            for (int j = 0; j < length; j++) {
+                types[i][j] = input.readShort();
+                values[i][j] = EvaluationProtocol.readValues(input);
+            }
+        }
+        return new EvaluationProtocol.ArgumentRows(names, types, values);
+    }
+
+    /**
+     * Writes a RESULT message.
+     * @param output The output stream
+     * @param scores The scores
+     * @throws IOException If something bad happens writing the message
+     */
+    static void writeResult(final DataOutputStream output,
+        final double... scores) throws IOException {
+        output.writeByte(EvaluationProtocol.RESULT);
+        output.writeInt(scores.length);
+        for (final double score : scores) {
+            output.writeDouble(score);
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes an ERROR message.
+     * @param output The output stream
+     * @param message The error message
+     * @throws IOException If something bad happens writing the message
+     */
+    static void writeError(final DataOutputStream output,
+        final String message) throws IOException {
+        output.writeByte(EvaluationProtocol.ERROR);
+        output.writeUTF(String.valueOf(message));
+        output.flush();
+    }
+
+    /**
+     * Reads the answer to a HELLO or EVALUATE message.
+     * @param input The input stream
+     * @param scores Where to copy the scores
+     * @param offset The position of the first score in the array
+     * @param expected The number of scores to read
+     * @throws IOException If something bad happens reading the message, or
+     *  the number of scores differs from the expected one
+     * @throws EvaluationProtocol.RemoteException If the worker reported an
+     *  error
+     */
+    static void readResult(final DataInputStream input, final double[] scores,
+        final int offset, final int expected) throws IOException {
+        final byte opcode = input.readByte();
+        if (opcode == EvaluationProtocol.ERROR) {
+            throw new EvaluationProtocol.RemoteException(input.readUTF());
+        }
+        if (opcode != EvaluationProtocol.RESULT) {
+            throw new IOException(
+                String.format("Unexpected opcode %d", opcode)
+            );
+        }
+        final int count = input.readInt();
+        if (count != expected) {
+            throw new IOException(
+                String.format("Expected %d scores, got %d", expected, count)
+            );
+        }
+        for (int i = 0; i < count; i++) {
+            scores[offset + i] = input.readDouble();
+        }
+    }
+
+    /**
+     * Computes the mode byte of an EVALUATE message.
+     * @param normalized Whether to use the normalized evaluation
+     * @param arguments Whether the rows contain arguments
+     * @return The mode flags
+     */
+    private static byte mode(final boolean normalized,
+        final boolean arguments) {
+        byte mode = 0;
+        if (normalized) {
+            mode |= EvaluationProtocol.NORMALIZED;
+        }
+        if (arguments) {
+            mode |= EvaluationProtocol.ARGUMENTS;
+        }
+        return mode;
+    }
+
+    /**
+     * Writes a length-prefixed array of values.
+     * @param output The output stream
+     * @param values The values
+     * @throws IOException If something bad happens writing the values
+     */
+    private static void writeValues(final DataOutputStream output,
+        final double... values) throws IOException {
+        output.writeInt(values.length);
+        for (final double value : values) {
+            output.writeDouble(value);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed array of values.
+     * @param input The input stream
+     * @return The values
+     * @throws IOException If something bad happens reading the values
+     */
+    private static double[] readValues(final DataInputStream input)
+        throws IOException {
+        final double[] values = new double[EvaluationProtocol.length(input)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Reads a length or count, which must not be negative.
+     * @param input The input stream
+     * @return The length
+     * @throws IOException If the length is negative
+     */
+    static int length(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            throw new IOException(String.format("Invalid length %d", length));
+        }
+        return length;
+    }
+
+    /**
+     * Finds the {@code double[]} constructor of an argument type.
+     * @param name The class name
+     * @return The constructor
+     * @throws IllegalArgumentException If the class or the constructor do not
+     *  exist
+     */
+    private static Constructor<?> constructor(final String name) {
+        final Class<?> type;
+        try {
+            type = Class.forName(name);
+        } catch (final ClassNotFoundException exception) {
+            throw new IllegalArgumentException(
+                String.format("Unknown argument type %s", name), exception
+            );
+        }
+        if (!FitnessFunction.Argument.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException(
+                String.format("%s is not an argument type", name)
+            );
+        }
+        try {
+            final Constructor<?> constructor =
+                type.getDeclaredConstructor(double[].class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (final ReflectiveOperationException | RuntimeException exception) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Argument type %s has no accessible double[] constructor",
+                    name
+                ),
+                exception
+            );
+        }
+    }
+
+    /**
+     * The argument rows of an EVALUATE message, before instantiating the
+     * arguments.
+     */
+    static final class ArgumentRows {
+
+        /**
+         * The argument class names.
+         */
+        private final String[] names;
+
+        /**
+         * The index of each argument's class name, per row.
+         */
+        private final short[][] types;
+
+        /**
+         * The values of each argument, per row.
+         */
+        private final double[][][] values;
+
+        /**
+         * Default constructor.
+         * @param names The argument class names
+         * @param types The index of each argument's class name, per row
+         * @param values The values of each argument, per row
+         */
+        ArgumentRows(final String[] names, final short[][] types,
+            final double[][]... values) {
+            this.names = names;
+            this.types = types;
+            this.values = values;
+        }
+
+        /**
+         * Instantiates the arguments.
+         * @param constructors Cache of argument constructors by class name
+         * @return The rows
+         * @throws IllegalArgumentException If an argument cannot be created
+         */
+        FitnessFunction.Argument[][] build(
+            final Map<String, Constructor<?>> constructors) {
+            final Constructor<?>[] resolved = new Constructor<?>[this.names.length];
+            for (int i = 0; i < this.names.length; i++) {
+                resolved[i] = constructors.computeIfAbsent(
+                    this.names[i], EvaluationProtocol::constructor
+                );
+            }
+            final FitnessFunction.Argument[][] rows =
+                new FitnessFunction.Argument[this.types.length][];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new FitnessFunction.Argument[this.types[i].length];
+                for (int j = 0; j < rows[i].length; j++) {
+                    final int type = this.types[i][j];
+                    if (type < 0 || type >= resolved.length) {
+                        throw new IllegalArgumentException(
+                            String.format("Invalid argument type index %d", type)
+                        );
+                    }
+                    try {
+                        rows[i][j] = (FitnessFunction.Argument)
+                            resolved[type].newInstance((Object) this.values[i][j]);
+                    } catch (final ReflectiveOperationException exception) {
+                        throw new IllegalArgumentException(
+                            String.format(
+                                "Cannot create an argument of type %s",
+                                this.names[type]
+                            ),
+                            exception
+                        );
+                    }
+                }
+            }
+            return rows;
+        }
+
+    }
+
+    /**
+     * An error reported by a worker. The connection is still usable.
+     */
+    static final class RemoteException extends IOException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Default constructor.
+         * @param message The error message
+         */
+        RemoteException(final String message) {
+            super(message);
+        }
+
+    }
+
+    /**
+     * A HELLO message that the worker cannot accept, e.g., an invalid function
+     * definition or an unsupported protocol version.
+     */
+    static final class RejectedException extends IOException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Default constructor.
+         * @param message The error message
+         * @param cause The cause of this exception
+         */
+        RejectedException(final String message, final Throwable cause) {
+            super(message, cause);
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.rigiresearch.fitness;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Hosts fitness functions on behalf of a {@link DistributedEvaluator}. Each
+ * connection starts by shipping the function definition, and then sends
+ * batches of rows that are evaluated in parallel on this worker's cores.
+ *
+ * <p>Function definitions use {@link FitnessFunctionFormat}, which falls back
+ * to Java serialization for user-defined functions, so a worker must only be
+ * reachable by trusted coordinators. By default it only listens on the
+ * loopback interface.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class EvaluationWorker implements Closeable {
+
+    /**
+     * Size of the buffers wrapping the socket streams.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The server socket accepting coordinator connections.
+     */
+    private final ServerSocket server;
+
+    /**
+     * Creates a worker listening on the loopback interface.
+     * @param port The port to listen on, or 0 to pick any free port
+     * @throws IOException If the port cannot be bound
+     */
+    public EvaluationWorker(final int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Creates a worker listening on the given address.
+     * @param address The address to listen on
+     * @throws IOException If the address cannot be bound
+     */
+    public EvaluationWorker(final InetSocketAddress address)
+        throws IOException {
+        this.server = new ServerSocket();
+        this.server.bind(address);
+    }
+
+    /**
+     * Starts a worker process. The first argument is the port to listen on
+     * (0 by default); the worker prints the bound port to the standard output.
+     * When {@code --exit-on-eof} is passed, the process exits as soon as its
+     * standard input is closed, which ties the worker's lifetime to the
+     * process that spawned it.
+     * @param args The command line arguments
+     * @throws IOException If the port cannot be bound
+     */
+    public static void main(final String... args) throws IOException {
+        int port = 0;
+        boolean watch = false;
+        for (final String arg : args) {
+            if ("--exit-on-eof".equals(arg)) {
+                watch = true;
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        if (watch) {
+            final Thread thread = new Thread(EvaluationWorker::exitOnEof);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        final EvaluationWorker worker = new EvaluationWorker(port);
+        System.out.println(worker.port());
+        System.out.flush();
+        worker.serve();
+    }
+
+    /**
+     * The port this worker is listening on.
+     * @return A port number
+     */
+    public int port() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until this worker is closed. Each connection is
+     * served on its own thread.
+     */
+    public void serve() {
+        while (!this.server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = this.server.accept();
+            } catch (final IOException exception) {
+                // The server socket was closed
+                break;
+            }
+            final Thread thread =
+                new Thread(() -> EvaluationWorker.handle(socket));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+    }
+
+    /**
+     * Serves a coordinator connection until it is closed.
+     * @param socket The connection
+     */
+    private static void handle(final Socket socket) {
+        try (Socket closeable = socket;
+            DataInputStream input = new DataInputStream(
+                new BufferedInputStream(
+                    closeable.getInputStream(), EvaluationWorker.BUFFER_SIZE)
+            );
+            DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(
+                    closeable.getOutputStream(), EvaluationWorker.BUFFER_SIZE)
+            )) {
+            closeable.setTcpNoDelay(true);
+            final FitnessFunction<?> function;
+            try {
+                function = EvaluationProtocol.function(
+                    EvaluationWorker.hello(input)
+                );
+            } catch (final EvaluationProtocol.RejectedException exception) {
+                EvaluationProtocol.writeError(output, exception.getMessage());
+                return;
+            }
+            EvaluationProtocol.writeResult(output);
+            final Map<String, Constructor<?>> constructors = new HashMap<>();
+            while (true) {
+                final byte opcode;
+                try {
+                    opcode = input.readByte();
+                } catch (final EOFException exception) {
+                    break;
+                }
+                if (opcode != EvaluationProtocol.EVALUATE) {
+                    throw new IOException(
+                        String.format("Unexpected opcode %d", opcode)
+                    );
+                }
+                final byte mode = input.readByte();
+                final int count = EvaluationProtocol.length(input);
+                final boolean normalized =
+                    (mode & EvaluationProtocol.NORMALIZED) != 0;
+                // Read the whole payload before evaluating anything, so the
+                // stream stays in sync when the batch is answered with ERROR
+                final double[][] plain;
+                final EvaluationProtocol.ArgumentRows arguments;
+                if ((mode & EvaluationProtocol.ARGUMENTS) == 0) {
+                    plain = EvaluationProtocol.readRows(input, count);
+                    arguments = null;
+                } else {
+                    plain = null;
+                    arguments = EvaluationProtocol.readArguments(input, count);
+                }
+                final double[] scores = new double[count];
+                try {
+                    if (arguments == null) {
+                        EvaluationWorker.evaluate(
+                            scores,
+                            i -> normalized
+                                ? function.evaluateNormalized(plain[i])
+                                : function.evaluate(plain[i])
+                        );
+                    } else {
+                        final FitnessFunction.Argument[][] rows =
+                            arguments.build(constructors);
+                        EvaluationWorker.evaluate(
+                            scores,
+                            i -> normalized
+                                ? function.evaluateNormalized(rows[i])
+                                : function.evaluate(rows[i])
+                        );
+                    }
+                } catch (final RuntimeException exception) {
+                    EvaluationProtocol.writeError(output, exception.toString());
+                    continue;
+                }
+                EvaluationProtocol.writeResult(output, scores);
+            }
+        } catch (final IOException exception) {
+            // The coordinator went away or spoke something else; drop it
+        }
+    }
+
+    /**
+     * Reads the HELLO message of a connection.
+     * @param input The input stream
+     * @return The definition of the function to evaluate on this connection
+     * @throws IOException If the message is not a valid HELLO
+     * @throws EvaluationProtocol.RejectedException If the coordinator speaks
+     *  another protocol version
+     */
+    private static byte[] hello(final DataInputStream input)
+        throws IOException {
+        if (input.readByte() != EvaluationProtocol.HELLO
+            || input.readInt() != EvaluationProtocol.MAGIC) {
+            throw new IOException("Not an evaluation protocol connection");
+        }
+        final byte version = input.readByte();
+        if (version != EvaluationProtocol.VERSION) {
+            throw new EvaluationProtocol.RejectedException(
+                String.format(
+                    "Unsupported protocol version %d, expected %d",
+                    version,
+                    EvaluationProtocol.VERSION
+                ),
+                null
+            );
+        }
+        final byte[] definition = new byte[EvaluationProtocol.length(input)];
+        input.readFully(definition);
+        return definition;
+    }
+
+    /**
+     * Computes the scores of a batch in parallel.
+     * @param scores Where to store the scores
+     * @param scorer Evaluates the i-th row
+     */
+    private static void evaluate(final double[] scores,
+        final IntToDoubleFunction scorer) {
+        IntStream.range(0, scores.length)
+            .parallel()
+            .forEach(i -> scores[i] = scorer.applyAsDouble(i));
+    }
+
+    /**
+     * Blocks until the standard input is closed and then exits.
+     */
+    private static void exitOnEof() {
+        final InputStream input = System.in;
+        try {
+            while (input.read() >= 0) {
+                // Discard
+            }
+        } catch (final IOException exception) {
+            // Treat as closed
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,262 @@
+package com.rigiresearch.fitness;
+
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events emitted by the fitness functions and
+ * evaluators. When no recording has them enabled, each event costs a single
+ * {@link Event#isEnabled()} check and the event allocation is optimized
+ * away by the JIT compiler.
+ *
+ * <p>Per-objective evaluations and out-of-range inputs can happen millions
+ * of times per generation, so they are sampled: only one in
+ * {@value #DEFAULT_SAMPLING} of them is recorded, unless the system property
+ * {@code com.rigiresearch.fitness.jfr.sampling} says otherwise (1 records
+ * every occurrence). Durations are further filtered by the thresholds
+ * below, which recordings can override in their settings.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+final class FitnessEvents {
+
+    /**
+     * The category of all fitness events.
+     */
+    private static final String CATEGORY = "Fitness";
+
+    /**
+     * Default sampling rate of frequent events.
+     */
+    private static final int DEFAULT_SAMPLING = 16;
+
+    /**
+     * Records one in this number of frequent events.
+     */
+    private static final int SAMPLING = Math.max(
+        1,
+        Integer.getInteger(
+            "com.rigiresearch.fitness.jfr.sampling",
+            FitnessEvents.DEFAULT_SAMPLING
+        )
+    );
+
+    /**
+     * Utility class.
+     */
+    private FitnessEvents() {
+        // Nothing to do here
+    }
+
+    /**
+     * Decides whether to record a frequent event.
+     * @return Whether the event is part of the sample
+     */
+    static boolean sampled() {
+        return FitnessEvents.SAMPLING == 1
+            || ThreadLocalRandom.current().nextInt(FitnessEvents.SAMPLING) == 0;
+    }
+
+    /**
+     * The evaluation of a batch of rows by one of the evaluators.
+     */
+    @Name("com.rigiresearch.fitness.BatchEvaluation")
+    @Label("Fitness Batch Evaluation")
+    @Description("Evaluation of a batch of argument rows")
+    @Category(FitnessEvents.CATEGORY)
+    @Threshold("10 ms")
+    static final class BatchEvaluation extends Event {
+
+        /**
+         * The evaluator.
+         */
+        @Label("Evaluator")
+        String evaluator;
+
+        /**
+         * The evaluated function.
+         */
+        @Label("Function")
+        String function;
+
+        /**
+         * The number of rows in the batch.
+         */
+        @Label("Rows")
+        int rows;
+
+        /**
+         * The number of function evaluations performed.
+         */
+        @Label("Evaluations")
+        int evaluations;
+
+        /**
+         * Ends and commits this event, if it passes the threshold.
+         * @param source The evaluator
+         * @param target The evaluated function
+         * @param length The number of rows in the batch
+         * @param count The number of function evaluations performed
+         */
+        void commit(final Object source, final FitnessFunction<?> target,
+            final int length, final int count) {
+            this.end();
+            if (this.shouldCommit()) {
+                this.evaluator = source.getClass().getSimpleName();
+                this.function = target.getClass().getName();
+                this.rows = length;
+                this.evaluations = count;
+                this.commit();
+            }
+        }
+
+    }
+
+    /**
+     * The evaluation of one objective of a {@link CompositeFitnessFunction}.
+     */
+    @Name("com.rigiresearch.fitness.ObjectiveEvaluation")
+    @Label("Fitness Objective Evaluation")
+    @Description("Evaluation of one objective of a composite function (sampled)")
+    @Category(FitnessEvents.CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class ObjectiveEvaluation extends Event {
+
+        /**
+         * The objective function.
+         */
+        @Label("Function")
+        String function;
+
+        /**
+         * The type of argument handled by the objective.
+         */
+        @Label("Argument Type")
+        String argument;
+
+        /**
+         * The objective's weight.
+         */
+        @Label("Weight")
+        double weight;
+
+        /**
+         * Ends and commits this event, if it passes the threshold.
+         * @param target The objective function
+         * @param percentage The objective's weight
+         */
+        void commit(final FitnessFunction<?> target, final double percentage) {
+            this.end();
+            if (this.shouldCommit()) {
+                this.function = target.getClass().getName();
+                this.argument = target.argumentType().getName();
+                this.weight = percentage;
+                this.commit();
+            }
+        }
+
+    }
+
+    /**
+     * An input outside of a function's domain.
+     */
+    @Name("com.rigiresearch.fitness.OutOfRange")
+    @Label("Fitness Input Out Of Range")
+    @Description("An input outside of the function's domain (sampled)")
+    @Category(FitnessEvents.CATEGORY)
+    @StackTrace(false)
+    static final class OutOfRange extends Event {
+
+        /**
+         * The function.
+         */
+        @Label("Function")
+        String function;
+
+        /**
+         * The input.
+         */
+        @Label("Value")
+        double value;
+
+        /**
+         * The lower bound of the domain.
+         */
+        @Label("Lower Bound")
+        double lower;
+
+        /**
+         * The upper bound of the domain.
+         */
+        @Label("Upper Bound")
+        double upper;
+
+        /**
+         * Records an out-of-range input, if enabled and sampled.
+         * @param target The function
+         * @param input The input
+         * @param min The lower bound of the domain
+         * @param max The upper bound of the domain
+         */
+        static void emit(final FitnessFunction<?> target, final double input,
+            final double min, final double max) {
+            final FitnessEvents.OutOfRange event = new FitnessEvents.OutOfRange();
+            if (event.isEnabled() && FitnessEvents.sampled()) {
+                event.function = target.getClass().getName();
+                event.value = input;
+                event.lower = min;
+                event.upper = max;
+                event.commit();
+            }
+        }
+
+    }
+
+    /**
+     * A composite function that failed its validation.
+     */
+    @Name("com.rigiresearch.fitness.ValidationFailure")
+    @Label("Fitness Validation Failure")
+    @Description("A composite function that failed its validation")
+    @Category(FitnessEvents.CATEGORY)
+    static final class ValidationFailure extends Event {
+
+        /**
+         * The number of functions in the composite function.
+         */
+        @Label("Functions")
+        int functions;
+
+        /**
+         * The reason of the failure.
+         */
+        @Label("Message")
+        String message;
+
+        /**
+         * Records a validation failure, if enabled.
+         * @param count The number of functions in the composite function
+         * @param reason The reason of the failure
+         */
+        static void emit(final int count, final String reason) {
+            final FitnessEvents.ValidationFailure event =
+                new FitnessEvents.ValidationFailure();
+            if (event.isEnabled()) {
+                event.functions = count;
+                event.message = reason;
+                event.commit();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,927 @@
+package com.rigiresearch.fitness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads and writes fitness function definitions in a versioned binary format
+ * and in an equivalent human-readable text format. Composite functions are
+ * validated both when written and when loaded, and the lookup tables of
+ * {@link TabulatedFitnessFunction}s are stored as they are, so loading a
+ * definition never recomputes anything.
+ *
+ * <p>The binary format starts with a header made of the magic number
+ * {@code FITF}, the format version and the byte order of the rest of the
+ * data (the native order of the writer). Then comes the root function:</p>
+ * <pre>
+ *     function   = tag:byte body
+ *     cubic      = a:double b:double c:double
+ *     normalized = min:double max:double
+ *     composite  = count:int (weight:double function)[count]
+ *     tabulated  = interpolation:byte lower:double upper:double error:double
+ *                  function count:int padding table:double[count]
+ *     serialized = size:int bytes:byte[size]
+ * </pre>
+ * <p>Tables are aligned to 8 bytes so that {@link #load(Path)} can read them
+ * in place from the memory-mapped file. Functions of any other type are
+ * stored with Java serialization, so they must be
+ * {@link java.io.Serializable}. Deserialization only accepts fitness
+ * functions, their arguments, the types of this package, primitives and
+ * arrays of them, boxed numbers, strings, big numbers and lists; any other
+ * class is rejected before it is instantiated.</p>
+ *
+ * <p>The text format follows the same structure, e.g.:</p>
+ * <pre>
+ *     fitness 1
+ *     composite 2 {
+ *       0.4 cubic 0.0 25.0 50.0
+ *       0.6 normalized 0.0 30.0
+ *     }
+ * </pre>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class FitnessFunctionFormat {
+
+    /**
+     * The first bytes of a binary definition ("FITF").
+     */
+    private static final int MAGIC = 0x46495446;
+
+    /**
+     * The format version.
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * The first token of a text definition.
+     */
+    private static final String HEADER = "fitness";
+
+    /**
+     * Byte order flag for big-endian data.
+     */
+    private static final byte BIG_ENDIAN = 0;
+
+    /**
+     * Byte order flag for little-endian data.
+     */
+    private static final byte LITTLE_ENDIAN = 1;
+
+    /**
+     * Tag of {@link CubicFitnessFunction}.
+     */
+    private static final byte CUBIC = 1;
+
+    /**
+     * Tag of {@link NormalizedFitnessFunction}.
+     */
+    private static final byte NORMALIZED = 2;
+
+    /**
+     * Tag of {@link CompositeFitnessFunction}.
+     */
+    private static final byte COMPOSITE = 3;
+
+    /**
+     * Tag of {@link TabulatedFitnessFunction}.
+     */
+    private static final byte TABULATED = 4;
+
+    /**
+     * Tag of Java-serialized functions.
+     */
+    private static final byte SERIALIZED = 5;
+
+    /**
+     * Alignment of lookup tables, in bytes.
+     */
+    private static final int ALIGNMENT = Double.BYTES;
+
+    /**
+     * Initial size of the binary output.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Maximum depth of the object graph of a serialized function.
+     */
+    private static final long MAX_DEPTH = 64L;
+
+    /**
+     * JDK classes that serialized functions may contain.
+     */
+    private static final Set<String> SERIALIZABLE = new HashSet<>(
+        Arrays.asList(
+            "java.lang.Boolean",
+            "java.lang.Byte",
+            "java.lang.Character",
+            "java.lang.Double",
+            "java.lang.Enum",
+            "java.lang.Float",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Number",
+            "java.lang.Short",
+            "java.lang.String",
+            "java.math.BigDecimal",
+            "java.math.BigInteger",
+            "java.util.ArrayList",
+            "java.util.Collections$UnmodifiableCollection",
+            "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList",
+            "java.util.ImmutableCollections$CollSer",
+            "java.util.LinkedList"
+        )
+    );
+
+    /**
+     * Utility class.
+     */
+    private FitnessFunctionFormat() {
+        // Nothing to do here
+    }
+
+    /**
+     * Encodes a function in the binary format.
+     * @param function The function
+     * @return The binary definition
+     */
+    public static byte[] toBinary(final FitnessFunction<?> function) {
+        final FitnessFunctionFormat.Output output =
+            new FitnessFunctionFormat.Output();
+        output.buffer.order(ByteOrder.BIG_ENDIAN);
+        output.ensure(Integer.BYTES).putInt(FitnessFunctionFormat.MAGIC);
+        output.ensure(2).put(FitnessFunctionFormat.VERSION);
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            output.buffer.put(FitnessFunctionFormat.LITTLE_ENDIAN);
+        } else {
+            output.buffer.put(FitnessFunctionFormat.BIG_ENDIAN);
+        }
+        output.buffer.order(ByteOrder.nativeOrder());
+        FitnessFunctionFormat.encode(function, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a function from the binary format.
+     * @param bytes The binary definition
+     * @return The function
+     */
+    public static FitnessFunction<?> fromBinary(final byte... bytes) {
+        return FitnessFunctionFormat.fromBinary(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a function from the binary format, starting at the buffer's
+     * position. When the buffer is direct (e.g., memory-mapped), lookup tables
+     * are read from it instead of being copied to the heap.
+     * @param buffer The binary definition
+     * @return The function
+     */
+    public static FitnessFunction<?> fromBinary(final ByteBuffer buffer) {
+        final ByteBuffer input = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (input.getInt() != FitnessFunctionFormat.MAGIC) {
+                throw new IllegalArgumentException(
+                    "Not a fitness function definition"
+                );
+            }
+            final byte version = input.get();
+            if (version != FitnessFunctionFormat.VERSION) {
+                throw new IllegalArgumentException(
+                    String.format("Unsupported format version %d", version)
+                );
+            }
+            final byte order = input.get();
+            if (order == FitnessFunctionFormat.LITTLE_ENDIAN) {
+                input.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (order != FitnessFunctionFormat.BIG_ENDIAN) {
+                throw new IllegalArgumentException(
+                    String.format("Unknown byte order %d", order)
+                );
+            }
+            return FitnessFunctionFormat.decode(input);
+        } catch (final BufferUnderflowException exception) {
+            throw new IllegalArgumentException(
+                "Truncated fitness function definition", exception
+            );
+        }
+    }
+
+    /**
+     * Writes a function to a file in the binary format.
+     * @param function The function
+     * @param file The file
+     * @throws IOException If something bad happens writing the file
+     */
+    public static void write(final FitnessFunction<?> function,
+        final Path file) throws IOException {
+        Files.write(file, FitnessFunctionFormat.toBinary(function));
+    }
+
+    /**
+     * Loads a function from a file in the binary format. The file is
+     * memory-mapped, and lookup tables are read from the mapping.
+     * @param file The file
+     * @return The function
+     * @throws IOException If something bad happens reading the file
+     */
+    public static FitnessFunction<?> load(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return FitnessFunctionFormat.fromBinary(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size())
+            );
+        }
+    }
+
+    /**
+     * Encodes a function in the text format.
+     * @param function The function
+     * @return The text definition
+     */
+    public static String toText(final FitnessFunction<?> function) {
+        final StringBuilder builder = new StringBuilder(
+            FitnessFunctionFormat.INITIAL_CAPACITY
+        );
+        builder.append(FitnessFunctionFormat.HEADER)
+            .append(' ')
+            .append(FitnessFunctionFormat.VERSION)
+            .append('\n');
+        FitnessFunctionFormat.write(function, builder, "");
+        builder.append('\n');
+        return builder.toString();
+    }
+
+    /**
+     * Decodes a function from the text format. Lines starting with {@code #}
+     * are ignored.
+     * @param text The text definition
+     * @return The function
+     */
+    public static FitnessFunction<?> fromText(final CharSequence text) {
+        final FitnessFunctionFormat.Tokens tokens =
+            new FitnessFunctionFormat.Tokens(text);
+        tokens.expect(FitnessFunctionFormat.HEADER);
+        final int version = tokens.nextInt();
+        if (version != FitnessFunctionFormat.VERSION) {
+            throw new IllegalArgumentException(
+                String.format("Unsupported format version %d", version)
+            );
+        }
+        final FitnessFunction<?> function = FitnessFunctionFormat.read(tokens);
+        if (tokens.hasNext()) {
+            throw new IllegalArgumentException(
+                String.format("Unexpected token '%s'", tokens.next())
+            );
+        }
+        return function;
+    }
+
+    /**
+     * Writes a function in the binary format.
+     * @param function The function
+     * @param output The output
+     */
+    private static void encode(final FitnessFunction<?> function,
+        final FitnessFunctionFormat.Output output) {
+        if (function instanceof CubicFitnessFunction) {
+            final CubicFitnessFunction cubic = (CubicFitnessFunction) function;
+            output.ensure(1 + 3 * Double.BYTES)
+                .put(FitnessFunctionFormat.CUBIC)
+                .putDouble(cubic.a())
+                .putDouble(cubic.b())
+                .putDouble(cubic.c());
+        } else if (function instanceof NormalizedFitnessFunction) {
+            final NormalizedFitnessFunction normalized =
+                (NormalizedFitnessFunction) function;
+            output.ensure(1 + 2 * Double.BYTES)
+                .put(FitnessFunctionFormat.NORMALIZED)
+                .putDouble(normalized.min())
+                .putDouble(normalized.max());
+        } else if (function instanceof CompositeFitnessFunction) {
+            final List<CompositeFitnessFunction.Pair> pairs =
+                ((CompositeFitnessFunction) function).validate().pairs();
+            output.ensure(1 + Integer.BYTES)
+                .put(FitnessFunctionFormat.COMPOSITE)
+                .putInt(pairs.size());
+            for (final CompositeFitnessFunction.Pair pair : pairs) {
+                output.ensure(Double.BYTES).putDouble(pair.weight());
+                FitnessFunctionFormat.encode(pair.function(), output);
+            }
+        } else if (function instanceof TabulatedFitnessFunction) {
+            final TabulatedFitnessFunction<?> tabulated =
+                (TabulatedFitnessFunction<?>) function;
+            output.ensure(2 + 3 * Double.BYTES)
+                .put(FitnessFunctionFormat.TABULATED)
+                .put((byte) tabulated.interpolation().ordinal())
+                .putDouble(tabulated.lower())
+                .putDouble(tabulated.upper())
+                .putDouble(tabulated.error());
+            FitnessFunctionFormat.encode(tabulated.function(), output);
+            final DoubleBuffer table = tabulated.table();
+            final int size = table.remaining();
+            output.ensure(Integer.BYTES).putInt(size);
+            output.align();
+            output.ensure(size * Double.BYTES).asDoubleBuffer().put(table);
+            output.buffer.position(
+                output.buffer.position() + size * Double.BYTES
+            );
+        } else {
+            final byte[] bytes = FitnessFunctionFormat.serialize(function);
+            output.ensure(1 + Integer.BYTES + bytes.length)
+                .put(FitnessFunctionFormat.SERIALIZED)
+                .putInt(bytes.length)
+                .put(bytes);
+        }
+    }
+
+    /**
+     * Reads a function in the binary format.
+     * @param input The input, positioned at the function's tag
+     * @return The function
+     */
+    private static FitnessFunction<?> decode(final ByteBuffer input) {
+        final byte tag = input.get();
+        final FitnessFunction<?> function;
+        switch (tag) {
+            case FitnessFunctionFormat.CUBIC:
+                function = new CubicFitnessFunction(
+                    input.getDouble(), input.getDouble(), input.getDouble()
+                );
+                break;
+            case FitnessFunctionFormat.NORMALIZED:
+                function = new NormalizedFitnessFunction(
+                    input.getDouble(), input.getDouble()
+                );
+                break;
+            case FitnessFunctionFormat.COMPOSITE:
+                final int count = FitnessFunctionFormat.count(input.getInt());
+                final List<CompositeFitnessFunction.Pair> pairs =
+                    new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    final double weight = input.getDouble();
+                    pairs.add(
+                        new CompositeFitnessFunction.Pair(
+                            FitnessFunctionFormat.decode(input), weight
+                        )
+                    );
+                }
+                function = FitnessFunctionFormat.composite(pairs);
+                break;
+            case FitnessFunctionFormat.TABULATED:
+                final TabulatedFitnessFunction.Interpolation interpolation =
+                    FitnessFunctionFormat.interpolation(input.get());
+                final double lower = input.getDouble();
+                final double upper = input.getDouble();
+                final double error = input.getDouble();
+                final FitnessFunction<?> tabulated =
+                    FitnessFunctionFormat.decode(input);
+                final int size = FitnessFunctionFormat.count(input.getInt());
+                final int start = FitnessFunctionFormat.aligned(input.position());
+                final int end = start + size * Double.BYTES;
+                if (end < start || end > input.limit()) {
+                    throw new BufferUnderflowException();
+                }
+                input.position(start);
+                final DoubleBuffer view = input.slice()
+                    .order(input.order())
+                    .asDoubleBuffer();
+                view.limit(size);
+                final DoubleBuffer table;
+                if (input.isDirect()) {
+                    table = view;
+                } else {
+                    final double[] values = new double[size];
+                    view.get(values);
+                    table = DoubleBuffer.wrap(values);
+                }
+                input.position(end);
+                function = FitnessFunctionFormat.tabulated(
+                    tabulated, lower, upper, interpolation, table, error
+                );
+                break;
+            case FitnessFunctionFormat.SERIALIZED:
+                final byte[] bytes =
+                    new byte[FitnessFunctionFormat.count(input.getInt())];
+                input.get(bytes);
+                function = FitnessFunctionFormat.deserialize(bytes);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("Unknown function tag %d", tag)
+                );
+        }
+        return function;
+    }
+
+    /**
+     * Writes a function in the text format.
+     * @param function The function
+     * @param builder The output
+     * @param indentation The indentation of nested lines
+     */
+    private static void write(final FitnessFunction<?> function,
+        final StringBuilder builder, final String indentation) {
+        final String nested = indentation + "  ";
+        if (function instanceof CubicFitnessFunction) {
+            final CubicFitnessFunction cubic = (CubicFitnessFunction) function;
+            builder.append("cubic ")
+                .append(cubic.a())
+                .append(' ')
+                .append(cubic.b())
+                .append(' ')
+                .append(cubic.c());
+        } else if (function instanceof NormalizedFitnessFunction) {
+            final NormalizedFitnessFunction normalized =
+                (NormalizedFitnessFunction) function;
+            builder.append("normalized ")
+                .append(normalized.min())
+                .append(' ')
+                .append(normalized.max());
+        } else if (function instanceof CompositeFitnessFunction) {
+            final List<CompositeFitnessFunction.Pair> pairs =
+                ((CompositeFitnessFunction) function).validate().pairs();
+            builder.append("composite ").append(pairs.size()).append(" {");
+            for (final CompositeFitnessFunction.Pair pair : pairs) {
+                builder.append('\n')
+                    .append(nested)
+                    .append(pair.weight())
+                    .append(' ');
+                FitnessFunctionFormat.write(pair.function(), builder, nested);
+            }
+            builder.append('\n').append(indentation).append('}');
+        } else if (function instanceof TabulatedFitnessFunction) {
+            final TabulatedFitnessFunction<?> tabulated =
+                (TabulatedFitnessFunction<?>) function;
+            builder.append("tabulated ")
+                .append(tabulated.interpolation().name().toLowerCase(Locale.ROOT))
+                .append(' ')
+                .append(tabulated.lower())
+                .append(' ')
+                .append(tabulated.upper())
+                .append(' ')
+                .append(tabulated.error())
+                .append(' ');
+            FitnessFunctionFormat.write(tabulated.function(), builder, indentation);
+            builder.append(" [");
+            final DoubleBuffer table = tabulated.table();
+            final int width = tabulated.interpolation().width();
+            for (int i = 0; i < table.limit(); i++) {
+                if (i % width == 0) {
+                    builder.append('\n').append(nested);
+                } else {
+                    builder.append(' ');
+                }
+                builder.append(table.get(i));
+            }
+            builder.append('\n').append(indentation).append(']');
+        } else {
+            builder.append("serialized ")
+                .append(
+                    Base64.getEncoder().encodeToString(
+                        FitnessFunctionFormat.serialize(function)
+                    )
+                );
+        }
+    }
+
+    /**
+     * Reads a function in the text format.
+     * @param tokens The input, positioned at the function's name
+     * @return The function
+     */
+    private static FitnessFunction<?> read(
+        final FitnessFunctionFormat.Tokens tokens) {
+        final String name = tokens.next();
+        final FitnessFunction<?> function;
+        switch (name) {
+            case "cubic":
+                function = new CubicFitnessFunction(
+                    tokens.nextDouble(), tokens.nextDouble(), tokens.nextDouble()
+                );
+                break;
+            case "normalized":
+                function = new NormalizedFitnessFunction(
+                    tokens.nextDouble(), tokens.nextDouble()
+                );
+                break;
+            case "composite":
+                final int count = FitnessFunctionFormat.count(tokens.nextInt());
+                final List<CompositeFitnessFunction.Pair> pairs =
+                    new ArrayList<>(count);
+                tokens.expect("{");
+                for (int i = 0; i < count; i++) {
+                    final double weight = tokens.nextDouble();
+                    pairs.add(
+                        new CompositeFitnessFunction.Pair(
+                            FitnessFunctionFormat.read(tokens), weight
+                        )
+                    );
+                }
+                tokens.expect("}");
+                function = FitnessFunctionFormat.composite(pairs);
+                break;
+            case "tabulated":
+                final TabulatedFitnessFunction.Interpolation interpolation =
+                    FitnessFunctionFormat.interpolation(tokens.next());
+                final double lower = tokens.nextDouble();
+                final double upper = tokens.nextDouble();
+                final double error = tokens.nextDouble();
+                final FitnessFunction<?> tabulated =
+                    FitnessFunctionFormat.read(tokens);
+                tokens.expect("[");
+                final List<String> values = new ArrayList<>(
+                    FitnessFunctionFormat.INITIAL_CAPACITY
+                );
+                String token = tokens.next();
+                while (!"]".equals(token)) {
+                    values.add(token);
+                    token = tokens.next();
+                }
+                final double[] table = new double[values.size()];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = FitnessFunctionFormat.parse(values.get(i));
+                }
+                function = FitnessFunctionFormat.tabulated(
+                    tabulated,
+                    lower,
+                    upper,
+                    interpolation,
+                    DoubleBuffer.wrap(table),
+                    error
+                );
+                break;
+            case "serialized":
+                try {
+                    function = FitnessFunctionFormat.deserialize(
+                        Base64.getDecoder().decode(tokens.next())
+                    );
+                } catch (final IllegalArgumentException exception) {
+                    throw new IllegalArgumentException(
+                        "Invalid serialized function", exception
+                    );
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("Unknown function '%s'", name)
+                );
+        }
+        return function;
+    }
+
+    /**
+     * Creates a composite function from its decoded pairs.
+     * @param pairs The weighted functions
+     * @return The validated function
+     */
+    private static CompositeFitnessFunction composite(
+        final List<CompositeFitnessFunction.Pair> pairs) {
+        try {
+            return new CompositeFitnessFunction(pairs).validate();
+        } catch (final IllegalStateException exception) {
+            throw new IllegalArgumentException(
+                "Invalid composite function", exception
+            );
+        }
+    }
+
+    /**
+     * Creates a tabulated function from a previously built table.
+     * @param function The tabulated function
+     * @param lower The lower bound of the tabulated domain
+     * @param upper The upper bound of the tabulated domain
+     * @param interpolation The interpolation between table nodes
+     * @param table The coefficients of each interval
+     * @param error The maximum error measured while building the table
+     * @param <T> The type of input argument
+     * @return The tabulated function
+     */
+    private static <T extends FitnessFunction.Argument>
+        TabulatedFitnessFunction<T> tabulated(final FitnessFunction<T> function,
+        final double lower, final double upper,
+        final TabulatedFitnessFunction.Interpolation interpolation,
+        final DoubleBuffer table, final double error) {
+        return new TabulatedFitnessFunction<>(
+            function, lower, upper, interpolation, table, error
+        );
+    }
+
+    /**
+     * Finds an interpolation by its ordinal.
+     * @param ordinal The ordinal
+     * @return The interpolation
+     */
+    private static TabulatedFitnessFunction.Interpolation interpolation(
+        final byte ordinal) {
+        final TabulatedFitnessFunction.Interpolation[] values =
+            TabulatedFitnessFunction.Interpolation.values();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException(
+                String.format("Unknown interpolation %d", ordinal)
+            );
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Finds an interpolation by its name.
+     * @param name The name, in any case
+     * @return The interpolation
+     */
+    private static TabulatedFitnessFunction.Interpolation interpolation(
+        final String name) {
+        try {
+            return TabulatedFitnessFunction.Interpolation.valueOf(
+                name.toUpperCase(Locale.ROOT)
+            );
+        } catch (final IllegalArgumentException exception) {
+            throw new IllegalArgumentException(
+                String.format("Unknown interpolation '%s'", name), exception
+            );
+        }
+    }
+
+    /**
+     * Checks that a count read from a definition is not negative.
+     * @param count The count
+     * @return The same count
+     */
+    private static int count(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                String.format("Invalid count %d", count)
+            );
+        }
+        return count;
+    }
+
+    /**
+     * Rounds a position up to the table alignment.
+     * @param position The position
+     * @return The aligned position
+     */
+    private static int aligned(final int position) {
+        final int mask = FitnessFunctionFormat.ALIGNMENT - 1;
+        return position + mask & ~mask;
+    }
+
+    /**
+     * Parses a double value.
+     * @param token The token
+     * @return The value
+     */
+    private static double parse(final String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (final NumberFormatException exception) {
+            throw new IllegalArgumentException(
+                String.format("Expected a number but found '%s'", token),
+                exception
+            );
+        }
+    }
+
+    /**
+     * Serializes a function with Java serialization.
+     * @param function The function
+     * @return The serialized function
+     */
+    private static byte[] serialize(final FitnessFunction<?> function) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(function);
+        } catch (final IOException exception) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Function %s cannot be serialized",
+                    function.getClass().getCanonicalName()
+                ),
+                exception
+            );
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a function with Java serialization.
+     * @param bytes The serialized function
+     * @return The function
+     */
+    private static FitnessFunction<?> deserialize(final byte... bytes) {
+        try (ObjectInputStream input = new ObjectInputStream(
+            new ByteArrayInputStream(bytes))) {
+            input.setObjectInputFilter(FitnessFunctionFormat::filter);
+            return (FitnessFunction<?>) input.readObject();
+        } catch (final IOException | ClassNotFoundException
+            | ClassCastException exception) {
+            throw new IllegalArgumentException(
+                "Invalid serialized function", exception
+            );
+        }
+    }
+
+    /**
+     * Decides whether a class may be deserialized as part of a function.
+     * @param info The class and the state of the stream
+     * @return Whether the class is allowed
+     */
+    private static ObjectInputFilter.Status filter(
+        final ObjectInputFilter.FilterInfo info) {
+        if (info.depth() > FitnessFunctionFormat.MAX_DEPTH) {
+            return ObjectInputFilter.Status.REJECTED;
+        }
+        Class<?> type = info.serialClass();
+        if (type == null) {
+            return ObjectInputFilter.Status.UNDECIDED;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        final ObjectInputFilter.Status status;
+        if (type.isPrimitive()
+            || FitnessFunction.class.isAssignableFrom(type)
+            || FitnessFunction.Argument.class.isAssignableFrom(type)
+            || FitnessFunctionFormat.class.getPackage()
+                .equals(type.getPackage())
+            || FitnessFunctionFormat.SERIALIZABLE.contains(type.getName())) {
+            status = ObjectInputFilter.Status.ALLOWED;
+        } else {
+            status = ObjectInputFilter.Status.REJECTED;
+        }
+        return status;
+    }
+
+    /**
+     * A growable binary output.
+     */
+    private static final class Output {
+
+        /**
+         * The current buffer.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Default constructor.
+         */
+        Output() {
+            this.buffer = ByteBuffer.allocate(FitnessFunctionFormat.INITIAL_CAPACITY);
+        }
+
+        /**
+         * Makes room for more bytes.
+         * @param bytes The number of bytes about to be written
+         * @return The buffer
+         */
+        ByteBuffer ensure(final int bytes) {
+            if (this.buffer.remaining() < bytes) {
+                final int required = this.buffer.position() + bytes;
+                final ByteBuffer larger = ByteBuffer.allocate(
+                    Math.max(required, 2 * this.buffer.capacity())
+                ).order(this.buffer.order());
+                this.buffer.flip();
+                larger.put(this.buffer);
+                this.buffer = larger;
+            }
+            return this.buffer;
+        }
+
+        /**
+         * Pads the output with zeros up to the table alignment.
+         */
+        void align() {
+            final int position = this.buffer.position();
+            final int padding = FitnessFunctionFormat.aligned(position) - position;
+            this.ensure(padding).put(new byte[padding]);
+        }
+
+        /**
+         * Copies the written bytes.
+         * @return An array of bytes
+         */
+        byte[] toByteArray() {
+            final byte[] bytes = new byte[this.buffer.position()];
+            System.arraycopy(this.buffer.array(), 0, bytes, 0, bytes.length);
+            return bytes;
+        }
+
+    }
+
+    /**
+     * The tokens of a text definition.
+     */
+    private static final class Tokens {
+
+        /**
+         * The tokens.
+         */
+        private final List<String> tokens;
+
+        /**
+         * The position of the next token.
+         */
+        private int position;
+
+        /**
+         * Default constructor.
+         * @param text The text definition
+         */
+        Tokens(final CharSequence text) {
+            this.tokens = new ArrayList<>(FitnessFunctionFormat.INITIAL_CAPACITY);
+            for (final String line : text.toString().split("\n")) {
+                final String content = line.trim();
+                if (content.isEmpty() || content.charAt(0) == '#') {
+                    continue;
+                }
+                for (final String token : content.split("\\s+")) {
+                    this.tokens.add(token);
+                }
+            }
+        }
+
+        /**
+         * Whether there are more tokens.
+         * @return True if there is at least one more token
+         */
+        boolean hasNext() {
+            return this.position < this.tokens.size();
+        }
+
+        /**
+         * Consumes the next token.
+         * @return The token
+         */
+        String next() {
+            if (!this.hasNext()) {
+                throw new IllegalArgumentException(
+                    "Unexpected end of the definition"
+                );
+            }
+            final String token = this.tokens.get(this.position);
+            this.position++;
+            return token;
+        }
+
+        /**
+         * Consumes the next token as a double.
+         * @return The value
+         */
+        double nextDouble() {
+            return FitnessFunctionFormat.parse(this.next());
+        }
+
+        /**
+         * Consumes the next token as an integer.
+         * @return The value
+         */
+        int nextInt() {
+            final String token = this.next();
+            try {
+                return Integer.parseInt(token);
+            } catch (final NumberFormatException exception) {
+                throw new IllegalArgumentException(
+                    String.format("Expected an integer but found '%s'", token),
+                    exception
+                );
+            }
+        }
+
+        /**
+         * Consumes the next token, which must be the given one.
+         * @param expected The expected token
+         */
+        void expect(final String expected) {
+            final String token = this.next();
+            if (!expected.equals(token)) {
+                throw new IllegalArgumentException(
+                    String.format("Expected '%s' but found '%s'", expected, token)
+                );
+            }
+        }
+
+    }
+
+}
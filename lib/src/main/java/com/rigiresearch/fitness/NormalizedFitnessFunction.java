@@ -1,5 +1,7 @@
 package com.rigiresearch.fitness;
 
+import java.io.Serializable;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
@@ -12,7 +14,13 @@ import lombok.experimental.Accessors;
  */
 @RequiredArgsConstructor
 public final class NormalizedFitnessFunction
-    implements FitnessFunction<NormalizedFitnessFunction.NormalizedFunctionArgument> {
+    implements FitnessFunction<NormalizedFitnessFunction.NormalizedFunctionArgument>,
+        Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
 
     /**
      * Error message for unimplemented methods.
@@ -22,11 +30,15 @@ public final class NormalizedFitnessFunction
     /**
      * The minimum acceptable value.
      */
+    @Accessors(fluent = true)
+    @Getter(AccessLevel.PACKAGE)
     private final double min;
 
     /**
      * The maximum acceptable value.
      */
+    @Accessors(fluent = true)
+    @Getter(AccessLevel.PACKAGE)
     private final double max;
 
     @Override
@@ -76,6 +88,7 @@ public final class NormalizedFitnessFunction
      */
     private void checkArguments(final double... args) {
         if (args[0] > this.max || args[0] < 0.0) {
+            FitnessEvents.OutOfRange.emit(this, args[0], 0.0, this.max);
             throw new IllegalArgumentException(
                 String.format("Value %f is out of bounds", args[0])
             );
@@ -0,0 +1,516 @@
+package com.rigiresearch.fitness;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+
+/**
+ * Approximates the normalized curve of a one-dimensional fitness function
+ * with a lookup table over a fixed domain {@code [lower, upper]}. Every
+ * evaluation inside the domain becomes a table lookup plus one (linear) or
+ * three (cubic) fused multiply-adds. Inputs outside of the domain are
+ * delegated to the original function, so out-of-range semantics (e.g.,
+ * {@link CubicFitnessFunction}'s infinities) are preserved.
+ *
+ * <p>The number of intervals is chosen from the requested maximum absolute
+ * error: the table is refined by doubling its size until the error measured
+ * against the original function, at three points inside every interval, is
+ * at most half of the tolerance. The remaining half absorbs the error between
+ * those points, so the resulting error is an estimate rather than a bound: it
+ * holds for functions whose curvature does not change abruptly within an
+ * interval. {@link CubicFitnessFunction#tabulate(double, Interpolation)}
+ * instead sizes its tables from closed-form error bounds.</p>
+ *
+ * <p>Only {@link #evaluateNormalized(double...)} is tabulated; the rest of
+ * the methods delegate to the original function. Instances are immutable and
+ * can be shared across threads. Tables loaded with
+ * {@link FitnessFunctionFormat#load(java.nio.file.Path)} are read directly
+ * from the memory-mapped file.</p>
+ *
+ * @param <T> The type of input argument
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class TabulatedFitnessFunction<T extends FitnessFunction.Argument>
+    implements FitnessFunction<T>, Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The initial number of intervals.
+     */
+    static final int MIN_INTERVALS = 16;
+
+    /**
+     * The maximum number of intervals.
+     */
+    static final int MAX_INTERVALS = 1 << 22;
+
+    /**
+     * Positions inside each interval where the error is measured.
+     */
+    private static final double[] CHECKPOINTS = {0.25, 0.5, 0.75};
+
+    /**
+     * The tabulated function.
+     */
+    private final FitnessFunction<T> function;
+
+    /**
+     * The lower bound of the tabulated domain.
+     */
+    private final double lower;
+
+    /**
+     * The upper bound of the tabulated domain.
+     */
+    private final double upper;
+
+    /**
+     * The interpolation between table nodes.
+     */
+    private final TabulatedFitnessFunction.Interpolation interpolation;
+
+    /**
+     * The number of intervals.
+     */
+    private final int intervals;
+
+    /**
+     * The number of intervals per unit in the x axis.
+     */
+    private final double scale;
+
+    /**
+     * The polynomial coefficients of each interval, in increasing degree,
+     * on a local variable between 0 and 1.
+     */
+    private final DoubleBuffer table;
+
+    /**
+     * The maximum error, either estimated or bounded while building the table.
+     */
+    private final double error;
+
+    /**
+     * Default constructor.
+     * @param function The one-dimensional function to tabulate
+     * @param lower The lower bound of the tabulated domain
+     * @param upper The upper bound of the tabulated domain
+     * @param tolerance The maximum absolute error
+     * @param interpolation The interpolation between table nodes
+     */
+    public TabulatedFitnessFunction(final FitnessFunction<T> function,
+        final double lower, final double upper, final double tolerance,
+        final TabulatedFitnessFunction.Interpolation interpolation) {
+        if (!(lower < upper) || Double.isInfinite(upper - lower)) {
+            throw new IllegalArgumentException(
+                String.format("Invalid domain [%f, %f]", lower, upper)
+            );
+        }
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException(
+                String.format("Tolerance must be positive. Current value is %f", tolerance)
+            );
+        }
+        this.function = function;
+        this.lower = lower;
+        this.upper = upper;
+        this.interpolation = interpolation;
+        int size = TabulatedFitnessFunction.MIN_INTERVALS;
+        double[] coefficients = TabulatedFitnessFunction.coefficients(
+            function, lower, upper, interpolation, size
+        );
+        double measured = this.measure(size, coefficients);
+        while (measured > tolerance / 2.0) {
+            size *= 2;
+            if (size > TabulatedFitnessFunction.MAX_INTERVALS) {
+                throw new IllegalArgumentException(
+                    String.format(
+                        "Cannot reach an error of %e with %d intervals",
+                        tolerance,
+                        TabulatedFitnessFunction.MAX_INTERVALS
+                    )
+                );
+            }
+            coefficients = TabulatedFitnessFunction.coefficients(
+                function, lower, upper, interpolation, size
+            );
+            measured = this.measure(size, coefficients);
+        }
+        this.intervals = size;
+        this.scale = size / (upper - lower);
+        this.table = DoubleBuffer.wrap(coefficients);
+        this.error = measured;
+    }
+
+    /**
+     * Creates a function with a given number of intervals, whose error is
+     * already known.
+     * @param function The tabulated function
+     * @param lower The lower bound of the tabulated domain
+     * @param upper The upper bound of the tabulated domain
+     * @param interpolation The interpolation between table nodes
+     * @param size The number of intervals
+     * @param error A bound on the maximum error
+     */
+    TabulatedFitnessFunction(final FitnessFunction<T> function,
+        final double lower, final double upper,
+        final TabulatedFitnessFunction.Interpolation interpolation,
+        final int size, final double error) {
+        this(
+            function,
+            lower,
+            upper,
+            interpolation,
+            DoubleBuffer.wrap(
+                TabulatedFitnessFunction.coefficients(
+                    function, lower, upper, interpolation, size
+                )
+            ),
+            error
+        );
+    }
+
+    /**
+     * Creates a function from a previously built table.
+     * @param function The tabulated function
+     * @param lower The lower bound of the tabulated domain
+     * @param upper The upper bound of the tabulated domain
+     * @param interpolation The interpolation between table nodes
+     * @param table The coefficients of each interval
+     * @param error The maximum error, estimated or bounded
+     */
+    TabulatedFitnessFunction(final FitnessFunction<T> function,
+        final double lower, final double upper,
+        final TabulatedFitnessFunction.Interpolation interpolation,
+        final DoubleBuffer table, final double error) {
+        final int size = table.remaining() / interpolation.width();
+        if (!(lower < upper) || size < 1
+            || size * interpolation.width() != table.remaining()) {
+            throw new IllegalArgumentException("Invalid lookup table");
+        }
+        this.function = function;
+        this.lower = lower;
+        this.upper = upper;
+        this.interpolation = interpolation;
+        this.intervals = size;
+        this.scale = size / (upper - lower);
+        this.table = table.slice();
+        this.error = error;
+    }
+
+    /**
+     * The number of intervals in the table.
+     * @return A power of two
+     */
+    public int intervals() {
+        return this.intervals;
+    }
+
+    /**
+     * The maximum error of the table. Tables built with the public constructor
+     * report the error measured at sample points, which is an estimate; those
+     * built by {@link CubicFitnessFunction#tabulate(double, Interpolation)}
+     * report a bound.
+     * @return A positive number, including 0
+     */
+    public double error() {
+        return this.error;
+    }
+
+    /**
+     * The tabulated function.
+     * @return The original function
+     */
+    FitnessFunction<T> function() {
+        return this.function;
+    }
+
+    /**
+     * The lower bound of the tabulated domain.
+     * @return A double value
+     */
+    double lower() {
+        return this.lower;
+    }
+
+    /**
+     * The upper bound of the tabulated domain.
+     * @return A double value
+     */
+    double upper() {
+        return this.upper;
+    }
+
+    /**
+     * The interpolation between table nodes.
+     * @return The interpolation
+     */
+    TabulatedFitnessFunction.Interpolation interpolation() {
+        return this.interpolation;
+    }
+
+    /**
+     * The coefficients of each interval.
+     * @return A read-only view of the table
+     */
+    DoubleBuffer table() {
+        return this.table.asReadOnlyBuffer();
+    }
+
+    @Override
+    public double evaluate(final double... args) {
+        return this.function.evaluate(args);
+    }
+
+    @Override
+    public double evaluateNormalized(final double... args) {
+        final double x = args[0];
+        final double y;
+        if (x >= this.lower && x <= this.upper) {
+            final double position = (x - this.lower) * this.scale;
+            final int interval = Math.min((int) position, this.intervals - 1);
+            y = this.interpolation.interpolate(
+                this.table, interval, position - interval
+            );
+        } else {
+            y = this.function.evaluateNormalized(args);
+        }
+        return y;
+    }
+
+    @Override
+    public double evaluate(final FitnessFunction.Argument... args) {
+        return this.function.evaluate(args);
+    }
+
+    @Override
+    public double evaluateNormalized(final FitnessFunction.Argument... args) {
+        return this.function.evaluateNormalized(args);
+    }
+
+    @Override
+    public Class<T> argumentType() {
+        return this.function.argumentType();
+    }
+
+    /**
+     * Serializes this function in its compact binary format.
+     * @return A serialization proxy
+     */
+    private Object writeReplace() {
+        return new TabulatedFitnessFunction.Proxy(
+            FitnessFunctionFormat.toBinary(this)
+        );
+    }
+
+    /**
+     * Prevents deserializing this function without its proxy.
+     * @param stream The object stream
+     * @throws InvalidObjectException Always
+     */
+    private void readObject(final ObjectInputStream stream)
+        throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+
+    /**
+     * Samples a function and computes the coefficients of each interval.
+     * @param function The tabulated function
+     * @param lower The lower bound of the tabulated domain
+     * @param upper The upper bound of the tabulated domain
+     * @param interpolation The interpolation between table nodes
+     * @param size The number of intervals
+     * @return The coefficients
+     */
+    private static double[] coefficients(final FitnessFunction<?> function,
+        final double lower, final double upper,
+        final TabulatedFitnessFunction.Interpolation interpolation,
+        final int size) {
+        final double step = (upper - lower) / size;
+        final double[] nodes = new double[size + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = function.evaluateNormalized(
+                Math.min(upper, lower + i * step)
+            );
+        }
+        return interpolation.coefficients(nodes);
+    }
+
+    /**
+     * Measures the maximum error of a table against the original function.
+     * @param size The number of intervals
+     * @param coefficients The coefficients
+     * @return The maximum absolute error
+     */
+    private double measure(final int size, final double... coefficients) {
+        final double step = (this.upper - this.lower) / size;
+        final DoubleBuffer table = DoubleBuffer.wrap(coefficients);
+        double max = 0.0;
+        for (int i = 0; i < size; i++) {
+            for (final double t : TabulatedFitnessFunction.CHECKPOINTS) {
+                final double expected = this.function.evaluateNormalized(
+                    this.lower + (i + t) * step
+                );
+                final double actual =
+                    this.interpolation.interpolate(table, i, t);
+                final double difference = Math.abs(expected - actual);
+                if (!(difference <= max)) {
+                    // Also propagates NaN so that the tolerance is never met
+                    max = difference;
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The interpolation between table nodes.
+     */
+    public enum Interpolation {
+
+        /**
+         * Piecewise linear interpolation.
+         */
+        LINEAR(2) {
+            @Override
+            double[] coefficients(final double... nodes) {
+                final int size = nodes.length - 1;
+                final double[] table = new double[2 * size];
+                for (int i = 0; i < size; i++) {
+                    table[2 * i] = nodes[i];
+                    table[2 * i + 1] = nodes[i + 1] - nodes[i];
+                }
+                return table;
+            }
+
+            @Override
+            double interpolate(final DoubleBuffer table, final int interval,
+                final double t) {
+                final int base = 2 * interval;
+                return Math.fma(t, table.get(base + 1), table.get(base));
+            }
+        },
+
+        /**
+         * Piecewise cubic Hermite interpolation, with slopes estimated from
+         * the neighbouring nodes.
+         */
+        CUBIC(4) {
+            @Override
+            double[] coefficients(final double... nodes) {
+                final int size = nodes.length - 1;
+                final double[] slopes = new double[nodes.length];
+                slopes[0] = (-3.0 * nodes[0] + 4.0 * nodes[1] - nodes[2]) / 2.0;
+                for (int i = 1; i < size; i++) {
+                    slopes[i] = (nodes[i + 1] - nodes[i - 1]) / 2.0;
+                }
+                slopes[size] = (3.0 * nodes[size] - 4.0 * nodes[size - 1]
+                    + nodes[size - 2]) / 2.0;
+                final double[] table = new double[4 * size];
+                for (int i = 0; i < size; i++) {
+                    final double delta = nodes[i + 1] - nodes[i];
+                    table[4 * i] = nodes[i];
+                    table[4 * i + 1] = slopes[i];
+                    table[4 * i + 2] = 3.0 * delta - 2.0 * slopes[i] - slopes[i + 1];
+                    table[4 * i + 3] = slopes[i] + slopes[i + 1] - 2.0 * delta;
+                }
+                return table;
+            }
+
+            @Override
+            double interpolate(final DoubleBuffer table, final int interval,
+                final double t) {
+                final int base = 4 * interval;
+                return Math.fma(
+                    Math.fma(
+                        Math.fma(t, table.get(base + 3), table.get(base + 2)),
+                        t,
+                        table.get(base + 1)
+                    ),
+                    t,
+                    table.get(base)
+                );
+            }
+        };
+
+        /**
+         * The number of coefficients per interval.
+         */
+        private final int width;
+
+        /**
+         * Default constructor.
+         * @param width The number of coefficients per interval
+         */
+        Interpolation(final int width) {
+            this.width = width;
+        }
+
+        /**
+         * The number of coefficients per interval.
+         * @return A positive number
+         */
+        int width() {
+            return this.width;
+        }
+
+        /**
+         * Computes the coefficients of each interval.
+         * @param nodes The values of the function at the table nodes
+         * @return The coefficients
+         */
+        abstract double[] coefficients(double... nodes);
+
+        /**
+         * Evaluates the polynomial of an interval.
+         * @param table The coefficients
+         * @param interval The interval
+         * @param t The position inside the interval, between 0 and 1
+         * @return The interpolated value
+         */
+        abstract double interpolate(DoubleBuffer table, int interval, double t);
+
+    }
+
+    /**
+     * The serialized form of a tabulated function, encoded with
+     * {@link FitnessFunctionFormat}.
+     */
+    private static final class Proxy implements Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The binary definition.
+         */
+        private final byte[] definition;
+
+        /**
+         * Default constructor.
+         * @param definition The binary definition
+         */
+        Proxy(final byte[] definition) {
+            this.definition = definition;
+        }
+
+        /**
+         * Decodes the tabulated function.
+         * @return The function
+         */
+        private Object readResolve() {
+            return FitnessFunctionFormat.fromBinary(this.definition);
+        }
+
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.rigiresearch.fitness;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Keeps the {@code k} best scored candidates out of a stream of
+ * {@code (candidate index, score)} pairs. Each producing thread feeds its own
+ * primitive binary min-heap, so offering a score neither boxes nor contends on
+ * a lock; the per-thread heaps are merged when {@link #select()} is called.
+ *
+ * <p>Non-finite scores are never selected. {@link CubicFitnessFunction}
+ * returns negative or positive infinity when the input is out of range, and
+ * positive infinity would otherwise beat every valid candidate. Rejected
+ * scores are counted by {@link Selection#rejected()}.</p>
+ *
+ * <p>Ties are broken by the smallest candidate index, which makes the
+ * selection independent of the order in which candidates are offered.</p>
+ *
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+public final class TopKSelector {
+
+    /**
+     * The number of candidates to keep.
+     */
+    private final int size;
+
+    /**
+     * The heaps created so far, one per producing thread.
+     */
+    private final List<TopKSelector.Heap> heaps;
+
+    /**
+     * The heap of the current thread.
+     */
+    private final ThreadLocal<TopKSelector.Heap> local;
+
+    /**
+     * Default constructor.
+     * @param size The number of candidates to keep
+     */
+    public TopKSelector(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                String.format("Size must be positive. Current value is %d", size)
+            );
+        }
+        this.size = size;
+        this.heaps = new CopyOnWriteArrayList<>();
+        this.local = ThreadLocal.withInitial(() -> {
+            final TopKSelector.Heap heap = new TopKSelector.Heap(this.size);
+            this.heaps.add(heap);
+            return heap;
+        });
+    }
+
+    /**
+     * Evaluates the given rows in parallel with
+     * {@link FitnessFunction#evaluate(double...)} and selects the best
+     * {@code size} of them, using the row position as the candidate index.
+     * @param size The number of candidates to keep
+     * @param function The fitness function
+     * @param rows The arguments of each candidate
+     * @return The selected candidates
+     */
+    public static TopKSelector.Selection select(final int size,
+        final FitnessFunction<?> function, final double[]... rows) {
+        return TopKSelector.select(
+            size, function, rows.length, i -> function.evaluate(rows[i])
+        );
+    }
+
+    /**
+     * Evaluates the given rows in parallel with
+     * {@link FitnessFunction#evaluate(FitnessFunction.Argument...)} and
+     * selects the best {@code size} of them, using the row position as the
+     * candidate index. This is the variant that works with
+     * {@link CompositeFitnessFunction}.
+     * @param size The number of candidates to keep
+     * @param function The fitness function
+     * @param rows The arguments of each candidate
+     * @return The selected candidates
+     */
+    public static TopKSelector.Selection select(final int size,
+        final FitnessFunction<?> function,
+        final FitnessFunction.Argument[]... rows) {
+        return TopKSelector.select(
+            size, function, rows.length, i -> function.evaluate(rows[i])
+        );
+    }
+
+    /**
+     * Offers a scored candidate. This method is safe to call from several
+     * threads at the same time.
+     * @param index The candidate index
+     * @param score The candidate's fitness score
+     */
+    public void offer(final int index, final double score) {
+        this.local.get().offer(index, score);
+    }
+
+    /**
+     * Merges the per-thread heaps and returns the selected candidates, best
+     * first. Producers must have finished (e.g., their tasks were joined)
+     * before calling this method.
+     * @return The selected candidates
+     */
+    public TopKSelector.Selection select() {
+        final TopKSelector.Heap merged = new TopKSelector.Heap(this.size);
+        for (final TopKSelector.Heap heap : this.heaps) {
+            merged.rejected += heap.rejected;
+            for (int i = 0; i < heap.count; i++) {
+                merged.offer(heap.indices[i], heap.scores[i]);
+            }
+        }
+        return merged.drain();
+    }
+
+    /**
+     * Scores rows in parallel and selects the best {@code size} of them.
+     * @param size The number of candidates to keep
+     * @param function The fitness function, for the recorded event
+     * @param length The number of rows
+     * @param scorer Evaluates the i-th row
+     * @return The selected candidates
+     */
+    private static TopKSelector.Selection select(final int size,
+        final FitnessFunction<?> function, final int length,
+        final IntToDoubleFunction scorer) {
+        final FitnessEvents.BatchEvaluation event =
+            new FitnessEvents.BatchEvaluation();
+        event.begin();
+        final TopKSelector selector = new TopKSelector(size);
+        IntStream.range(0, length)
+            .parallel()
+            .forEach(i -> selector.offer(i, scorer.applyAsDouble(i)));
+        final TopKSelector.Selection selection = selector.select();
+        event.commit(selector, function, length, length);
+        return selection;
+    }
+
+    /**
+     * A bounded binary min-heap of candidates backed by primitive arrays. The
+     * root is the worst candidate kept so far.
+     */
+    private static final class Heap {
+
+        /**
+         * Candidate indices.
+         */
+        private final int[] indices;
+
+        /**
+         * Candidate scores.
+         */
+        private final double[] scores;
+
+        /**
+         * The number of candidates in this heap.
+         */
+        private int count;
+
+        /**
+         * The number of non-finite scores offered to this heap.
+         */
+        private long rejected;
+
+        /**
+         * Default constructor.
+         * @param capacity The maximum number of candidates
+         */
+        Heap(final int capacity) {
+            this.indices = new int[capacity];
+            this.scores = new double[capacity];
+        }
+
+        /**
+         * Offers a candidate to this heap.
+         * @param index The candidate index
+         * @param score The candidate's fitness score
+         */
+        void offer(final int index, final double score) {
+            if (!Double.isFinite(score)) {
+                this.rejected++;
+            } else if (this.count < this.indices.length) {
+                this.indices[this.count] = index;
+                this.scores[this.count] = score;
+                this.siftUp(this.count);
+                this.count++;
+            } else if (TopKSelector.Heap.worse(
+                this.indices[0], this.scores[0], index, score)) {
+                this.indices[0] = index;
+                this.scores[0] = score;
+                this.siftDown(0);
+            }
+        }
+
+        /**
+         * Empties this heap into a selection sorted from best to worst.
+         * @return A selection
+         */
+        TopKSelector.Selection drain() {
+            final int total = this.count;
+            final int[] idx = new int[total];
+            final double[] val = new double[total];
+            for (int i = total - 1; i >= 0; i--) {
+                idx[i] = this.indices[0];
+                val[i] = this.scores[0];
+                this.count--;
+                this.indices[0] = this.indices[this.count];
+                this.scores[0] = this.scores[this.count];
+                this.siftDown(0);
+            }
+            return new TopKSelector.Selection(idx, val, this.rejected);
+        }
+
+        /**
+         * Moves the candidate at the given position up to restore the heap
+         * property.
+         * @param position The candidate position
+         */
+        private void siftUp(final int position) {
+            final int index = this.indices[position];
+            final double score = this.scores[position];
+            int child = position;
+            while (child > 0) {
+                final int parent = (child - 1) >>> 1;
+                if (!TopKSelector.Heap.worse(
+                    index, score, this.indices[parent], this.scores[parent])) {
+                    break;
+                }
+                this.indices[child] = this.indices[parent];
+                this.scores[child] = this.scores[parent];
+                child = parent;
+            }
+            this.indices[child] = index;
+            this.scores[child] = score;
+        }
+
+        /**
+         * Moves the candidate at the given position down to restore the heap
+         * property.
+         * @param position The candidate position
+         */
+        private void siftDown(final int position) {
+            final int index = this.indices[position];
+            final double score = this.scores[position];
+            int parent = position;
+            final int half = this.count >>> 1;
+            while (parent < half) {
+                int child = 2 * parent + 1;
+                final int right = child + 1;
+                if (right < this.count && TopKSelector.Heap.worse(
+                    this.indices[right], this.scores[right],
+                    this.indices[child], this.scores[child])) {
+                    child = right;
+                }
+                if (!TopKSelector.Heap.worse(
+                    this.indices[child], this.scores[child], index, score)) {
+                    break;
+                }
+                this.indices[parent] = this.indices[child];
+                this.scores[parent] = this.scores[child];
+                parent = child;
+            }
+            this.indices[parent] = index;
+            this.scores[parent] = score;
+        }
+
+        /**
+         * Whether the first candidate ranks below the second one.
+         * @param first The first candidate index
+         * @param fscore The first candidate's score
+         * @param second The second candidate index
+         * @param sscore The second candidate's score
+         * @return Whether the first candidate is worse
+         */
+        private static boolean worse(final int first, final double fscore,
+            final int second, final double sscore) {
+            return fscore < sscore || fscore == sscore && first > second;
+        }
+
+    }
+
+    /**
+     * The selected candidates, sorted from best to worst.
+     */
+    @Accessors(fluent = true)
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Selection {
+
+        /**
+         * Candidate indices.
+         */
+        private final int[] indices;
+
+        /**
+         * Candidate scores.
+         */
+        private final double[] scores;
+
+        /**
+         * The number of non-finite scores that were discarded.
+         */
+        private final long rejected;
+
+        /**
+         * The number of selected candidates.
+         * @return A number between 0 and the selector's size
+         */
+        public int size() {
+            return this.indices.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.rigiresearch.fitness;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link DeduplicatingEvaluator}.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+@Tag("integration")
+class DeduplicatingEvaluatorTest {
+
+    @Test
+    void testDuplicatesAreEvaluatedOnce() {
+        final CubicFitnessFunction cubic = new CubicFitnessFunction(0.0, 10.0, 20.0);
+        final double[][] rows = new double[1000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {i % 10};
+        }
+        final DeduplicatingEvaluator evaluator = new DeduplicatingEvaluator(cubic);
+        final double[] scores = evaluator.evaluateNormalized(rows);
+        for (int i = 0; i < rows.length; i++) {
+            Assertions.assertEquals(cubic.evaluateNormalized(rows[i]), scores[i]);
+        }
+        final DeduplicatingEvaluator.Statistics statistics = evaluator.statistics();
+        Assertions.assertEquals(1000L, statistics.rows());
+        Assertions.assertEquals(10L, statistics.evaluations());
+        Assertions.assertEquals(990L, statistics.duplicates());
+        Assertions.assertEquals(0.99, statistics.duplicateRatio());
+    }
+
+    @Test
+    void testCompositeArgumentRows() {
+        final CompositeFitnessFunction function = new CompositeFitnessFunction()
+            .withFunction(new CubicFitnessFunction(0.0, 25.0, 50.0), 0.4)
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.6)
+            .validate();
+        final FitnessFunction.Argument[][] rows = new FitnessFunction.Argument[6][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new FitnessFunction.Argument[] {
+                new CubicFitnessFunction.CubicFunctionArgument(i % 2 * 10.0),
+                new NormalizedFitnessFunction.NormalizedFunctionArgument(i % 3 * 5.0)
+            };
+        }
+        final DeduplicatingEvaluator evaluator = new DeduplicatingEvaluator(function);
+        final double[] scores = evaluator.evaluate(rows);
+        for (int i = 0; i < rows.length; i++) {
+            Assertions.assertEquals(function.evaluate(rows[i]), scores[i]);
+        }
+        // Six combinations of (i % 2, i % 3), so no duplicates
+        Assertions.assertEquals(0L, evaluator.statistics().duplicates());
+        evaluator.evaluate(rows[0], rows[0], rows[1]);
+        Assertions.assertEquals(1L, evaluator.statistics().duplicates());
+    }
+
+    @Test
+    void testEmptyBatch() {
+        final DeduplicatingEvaluator evaluator = new DeduplicatingEvaluator(
+            new NormalizedFitnessFunction(0.0, 30.0)
+        );
+        Assertions.assertEquals(0, evaluator.evaluate(new double[0][]).length);
+        Assertions.assertEquals(0.0, evaluator.statistics().duplicateRatio());
+    }
+
+}
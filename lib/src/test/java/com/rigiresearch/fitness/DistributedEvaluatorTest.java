@@ -0,0 +1,423 @@
+package com.rigiresearch.fitness;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link DistributedEvaluator} against worker processes spawned on this
+ * machine.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+@Tag("integration")
+class DistributedEvaluatorTest {
+
+    /**
+     * The number of worker processes.
+     */
+    private static final int WORKERS = 3;
+
+    /**
+     * The number of rows to evaluate.
+     */
+    private static final int ROWS = 5000;
+
+    /**
+     * The worker processes.
+     */
+    private final List<Process> processes = new ArrayList<>(
+        DistributedEvaluatorTest.WORKERS
+    );
+
+    /**
+     * The worker ports.
+     */
+    private final List<Integer> ports = new ArrayList<>(
+        DistributedEvaluatorTest.WORKERS
+    );
+
+    @BeforeEach
+    void startWorkers() throws IOException {
+        final String java = String.join(
+            File.separator,
+            System.getProperty("java.home"),
+            "bin",
+            "java"
+        );
+        for (int i = 0; i < DistributedEvaluatorTest.WORKERS; i++) {
+            final Process process = new ProcessBuilder(
+                java,
+                "-cp",
+                System.getProperty("java.class.path"),
+                EvaluationWorker.class.getName(),
+                "0",
+                "--exit-on-eof"
+            ).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            this.processes.add(process);
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                    process.getInputStream(), StandardCharsets.UTF_8
+                )
+            );
+            this.ports.add(Integer.parseInt(reader.readLine().trim()));
+        }
+    }
+
+    @AfterEach
+    void stopWorkers() throws InterruptedException {
+        for (final Process process : this.processes) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    @Test
+    void testCompositeFunction() {
+        final CompositeFitnessFunction function = new CompositeFitnessFunction()
+            .withFunction(new CubicFitnessFunction(0.0, 25.0, 50.0), 0.4)
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.6)
+            .validate();
+        final FitnessFunction.Argument[][] rows =
+            new FitnessFunction.Argument[DistributedEvaluatorTest.ROWS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new FitnessFunction.Argument[] {
+                new CubicFitnessFunction.CubicFunctionArgument(i % 51),
+                new NormalizedFitnessFunction.NormalizedFunctionArgument(i % 31)
+            };
+        }
+        try (DistributedEvaluator evaluator = this.evaluator(function)) {
+            final double[] scores = evaluator.evaluate(rows);
+            for (int i = 0; i < rows.length; i++) {
+                Assertions.assertEquals(function.evaluate(rows[i]), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    void testWorkerFailure() throws InterruptedException {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 10.0, 20.0);
+        final double[][] rows = new double[DistributedEvaluatorTest.ROWS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {i % 25};
+        }
+        try (DistributedEvaluator evaluator = this.evaluator(function)) {
+            evaluator.evaluateNormalized(rows);
+            // The evaluator is connected to the worker that is about to die
+            this.processes.get(0).destroyForcibly().waitFor();
+            final double[] scores = evaluator.evaluateNormalized(rows);
+            for (int i = 0; i < rows.length; i++) {
+                Assertions.assertEquals(
+                    function.evaluateNormalized(rows[i]), scores[i]
+                );
+            }
+        }
+    }
+
+    @Test
+    void testWorkerFailureDuringRun() throws InterruptedException {
+        final DistributedEvaluatorTest.Slow function =
+            new DistributedEvaluatorTest.Slow();
+        final double[][] rows = new double[150][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {i};
+        }
+        final Process victim = this.processes.get(0);
+        final Thread killer = new Thread(() -> {
+            try {
+                Thread.sleep(200L);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            victim.destroyForcibly();
+        });
+        try (DistributedEvaluator evaluator = this.evaluator(function)
+            .withBatchSize(1, 4)) {
+            killer.start();
+            final double[] scores = evaluator.evaluate(rows);
+            Assertions.assertFalse(victim.isAlive());
+            for (int i = 0; i < rows.length; i++) {
+                Assertions.assertEquals(function.evaluate(rows[i]), scores[i]);
+            }
+        } finally {
+            killer.join();
+        }
+    }
+
+    @Test
+    void testHungWorker() throws IOException {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 10.0, 20.0);
+        final double[][] rows = new double[DistributedEvaluatorTest.ROWS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {i % 21};
+        }
+        // Accepts connections (through the backlog) but never answers
+        try (ServerSocket hung = new ServerSocket(
+            0, 1, InetAddress.getLoopbackAddress());
+            DistributedEvaluator evaluator = this.evaluator(function)
+                .withWorker(
+                    new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(), hung.getLocalPort()
+                    )
+                )
+                .withTimeout(500)) {
+            final double[] scores = evaluator.evaluate(rows);
+            for (int i = 0; i < rows.length; i++) {
+                Assertions.assertEquals(function.evaluate(rows[i]), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    void testUnsendableRows() {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 10.0, 20.0);
+        try (DistributedEvaluator evaluator = this.evaluator(function)
+            .withBatchSize(1, 1)) {
+            Assertions.assertTimeoutPreemptively(
+                Duration.ofSeconds(10L),
+                () -> {
+                    Assertions.assertThrows(
+                        IllegalStateException.class,
+                        () -> evaluator.evaluate(
+                            new double[] {1.0}, new double[] {2.0}, null
+                        )
+                    );
+                    Assertions.assertThrows(
+                        IllegalStateException.class,
+                        () -> evaluator.evaluate(
+                            new FitnessFunction.Argument[] {
+                                () -> {
+                                    throw new IllegalArgumentException();
+                                }
+                            }
+                        )
+                    );
+                }
+            );
+            // The connections are reopened for the next run
+            Assertions.assertEquals(
+                function.evaluate(5.0), evaluator.evaluate(new double[] {5.0})[0]
+            );
+        }
+    }
+
+    @Test
+    void testIncompleteResults() throws IOException, InterruptedException {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 10.0, 20.0);
+        final double[][] rows = new double[DistributedEvaluatorTest.ROWS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {i % 21};
+        }
+        try (ServerSocket server = new ServerSocket(
+            0, 1, InetAddress.getLoopbackAddress())) {
+            // Answers the first batch with one score less than requested
+            final Thread faulty = new Thread(() -> {
+                try (Socket socket = server.accept();
+                    DataInputStream input =
+                        new DataInputStream(socket.getInputStream());
+                    DataOutputStream output =
+                        new DataOutputStream(socket.getOutputStream())) {
+                    input.readByte();
+                    input.readInt();
+                    input.readByte();
+                    input.readFully(new byte[input.readInt()]);
+                    output.writeByte(EvaluationProtocol.RESULT);
+                    output.writeInt(0);
+                    input.readByte();
+                    input.readByte();
+                    final int count = input.readInt();
+                    output.writeByte(EvaluationProtocol.RESULT);
+                    output.writeInt(count - 1);
+                    for (int i = 0; i < count - 1; i++) {
+                        output.writeDouble(0.0);
+                    }
+                    output.flush();
+                    input.read();
+                } catch (final IOException exception) {
+                    // The coordinator drops the connection
+                }
+            });
+            faulty.start();
+            try (DistributedEvaluator evaluator = this.evaluator(function)
+                .withWorker(
+                    new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(), server.getLocalPort()
+                    )
+                )) {
+                final double[] scores = evaluator.evaluate(rows);
+                for (int i = 0; i < rows.length; i++) {
+                    Assertions.assertEquals(
+                        function.evaluate(rows[i]), scores[i]
+                    );
+                }
+            } finally {
+                faulty.join();
+            }
+        }
+    }
+
+    @Test
+    void testFunctionErrorsAreNotRetried() {
+        try (DistributedEvaluator evaluator =
+            this.evaluator(new NormalizedFitnessFunction(0.0, 30.0))) {
+            Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> evaluator.evaluate(new double[] {10.0}, new double[] {40.0})
+            );
+            Assertions.assertEquals(
+                0.0, evaluator.evaluate(new double[] {15.0})[0]
+            );
+        }
+    }
+
+    @Test
+    void testUnbuildableArgumentsAreNotRetried() {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 10.0, 20.0);
+        try (DistributedEvaluator evaluator = this.evaluator(function)) {
+            final IllegalStateException exception = Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> evaluator.evaluate(
+                    new FitnessFunction.Argument[] {
+                        new DistributedEvaluatorTest.ScalarArgument(5.0)
+                    }
+                )
+            );
+            Assertions.assertTrue(
+                exception.getMessage().contains("double[] constructor")
+            );
+            // Every connection is still usable
+            final double[][] rows = new double[DistributedEvaluatorTest.ROWS][];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new double[] {i % 21};
+            }
+            final double[] scores = evaluator.evaluate(rows);
+            for (int i = 0; i < rows.length; i++) {
+                Assertions.assertEquals(function.evaluate(rows[i]), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    void testUnsupportedProtocolVersion() throws IOException {
+        try (Socket socket = new Socket(
+            InetAddress.getLoopbackAddress(), this.ports.get(0));
+            DataOutputStream output =
+                new DataOutputStream(socket.getOutputStream());
+            DataInputStream input =
+                new DataInputStream(socket.getInputStream())) {
+            output.writeByte(EvaluationProtocol.HELLO);
+            output.writeInt(EvaluationProtocol.MAGIC);
+            output.writeByte(EvaluationProtocol.VERSION + 1);
+            output.flush();
+            Assertions.assertEquals(EvaluationProtocol.ERROR, input.readByte());
+        }
+    }
+
+    /**
+     * Creates an evaluator connected to all the workers.
+     * @param function The fitness function
+     * @return The evaluator
+     */
+    private DistributedEvaluator evaluator(final FitnessFunction<?> function) {
+        final DistributedEvaluator evaluator = new DistributedEvaluator(function)
+            .withBatchSize(8, 256);
+        for (final int port : this.ports) {
+            evaluator.withWorker(port);
+        }
+        return evaluator;
+    }
+
+    /**
+     * A function that takes a while to evaluate each row.
+     */
+    private static final class Slow implements
+        FitnessFunction<CubicFitnessFunction.CubicFunctionArgument>,
+        Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double evaluate(final double... args) {
+            try {
+                Thread.sleep(20L);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return args[0] * 2.0;
+        }
+
+        @Override
+        public double evaluateNormalized(final double... args) {
+            return this.evaluate(args);
+        }
+
+        @Override
+        public double evaluate(final FitnessFunction.Argument... args) {
+            return this.evaluate(args[0].values());
+        }
+
+        @Override
+        public double evaluateNormalized(final FitnessFunction.Argument... args) {
+            return this.evaluate(args);
+        }
+
+        @Override
+        public Class<CubicFitnessFunction.CubicFunctionArgument> argumentType() {
+            return CubicFitnessFunction.CubicFunctionArgument.class;
+        }
+
+    }
+
+    /**
+     * An argument that workers cannot rebuild, as it lacks a {@code double[]}
+     * constructor.
+     */
+    private static final class ScalarArgument
+        implements FitnessFunction.Argument {
+
+        /**
+         * The argument value.
+         */
+        private final double value;
+
+        /**
+         * Default constructor.
+         * @param value The argument value
+         */
+        ScalarArgument(final double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double[] values() {
+            return new double[] {this.value};
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.rigiresearch.fitness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FitnessEvents}.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+@Tag("integration")
+class FitnessEventsTest {
+
+    /**
+     * The number of composite evaluations, enough to hit the sample.
+     */
+    private static final int EVALUATIONS = 2000;
+
+    @Test
+    void testRecordedEvents() throws IOException {
+        final CompositeFitnessFunction function = new CompositeFitnessFunction()
+            .withFunction(new CubicFitnessFunction(0.0, 25.0, 50.0), 0.4)
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.6)
+            .validate();
+        final FitnessFunction.Argument[][] rows =
+            new FitnessFunction.Argument[FitnessEventsTest.EVALUATIONS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new FitnessFunction.Argument[] {
+                // Half of the cubic inputs are out of range
+                new CubicFitnessFunction.CubicFunctionArgument(i % 100),
+                new NormalizedFitnessFunction.NormalizedFunctionArgument(i % 31)
+            };
+        }
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(FitnessEvents.BatchEvaluation.class)
+                .withThreshold(Duration.ZERO);
+            recording.enable(FitnessEvents.ObjectiveEvaluation.class)
+                .withThreshold(Duration.ZERO);
+            recording.enable(FitnessEvents.OutOfRange.class);
+            recording.enable(FitnessEvents.ValidationFailure.class);
+            recording.start();
+            new DeduplicatingEvaluator(function).evaluate(rows);
+            Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> new CompositeFitnessFunction()
+                    .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.5)
+                    .validate()
+            );
+            recording.stop();
+            final Path file = Files.createTempFile("fitness", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+        final List<String> names = events.stream()
+            .map(event -> event.getEventType().getName())
+            .collect(Collectors.toList());
+        Assertions.assertEquals(
+            1L,
+            names.stream()
+                .filter("com.rigiresearch.fitness.BatchEvaluation"::equals)
+                .count()
+        );
+        Assertions.assertEquals(
+            1L,
+            names.stream()
+                .filter("com.rigiresearch.fitness.ValidationFailure"::equals)
+                .count()
+        );
+        Assertions.assertTrue(
+            names.contains("com.rigiresearch.fitness.ObjectiveEvaluation"),
+            "Should have sampled some objective evaluations"
+        );
+        Assertions.assertTrue(
+            names.contains("com.rigiresearch.fitness.OutOfRange"),
+            "Should have sampled some out-of-range inputs"
+        );
+        Assertions.assertTrue(
+            events.stream()
+                .filter(
+                    event -> "com.rigiresearch.fitness.OutOfRange".equals(
+                        event.getEventType().getName()
+                    )
+                )
+                .allMatch(event -> event.getStackTrace() == null),
+            "Out-of-range inputs should not record stack traces"
+        );
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.rigiresearch.fitness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FitnessFunctionFormat}.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+@Tag("integration")
+class FitnessFunctionFormatTest {
+
+    /**
+     * Creates the arguments of the composite function under test.
+     */
+    private static final Function<Double, FitnessFunction.Argument[]> ARGS =
+        value -> new FitnessFunction.Argument[] {
+            new CubicFitnessFunction.CubicFunctionArgument(value),
+            new NormalizedFitnessFunction.NormalizedFunctionArgument(value / 2.0),
+            new FitnessFunctionFormatTest.SquareArgument(value)
+        };
+
+    @Test
+    void testBinaryFormat() {
+        final CompositeFitnessFunction function =
+            FitnessFunctionFormatTest.composite();
+        final FitnessFunction<?> loaded = FitnessFunctionFormat.fromBinary(
+            FitnessFunctionFormat.toBinary(function)
+        );
+        FitnessFunctionFormatTest.assertSameScores(function, loaded);
+    }
+
+    @Test
+    void testTextFormat() {
+        final CompositeFitnessFunction function =
+            FitnessFunctionFormatTest.composite();
+        final String text = FitnessFunctionFormat.toText(function);
+        final FitnessFunction<?> loaded = FitnessFunctionFormat.fromText(
+            "# A comment\n" + text
+        );
+        FitnessFunctionFormatTest.assertSameScores(function, loaded);
+        Assertions.assertEquals(text, FitnessFunctionFormat.toText(loaded));
+        Assertions.assertEquals(
+            "fitness 1\nnormalized 0.0 30.0\n",
+            FitnessFunctionFormat.toText(new NormalizedFitnessFunction(0.0, 30.0))
+        );
+    }
+
+    @Test
+    void testMemoryMappedFile() throws IOException {
+        final CompositeFitnessFunction function =
+            FitnessFunctionFormatTest.composite();
+        final Path file = Files.createTempFile("fitness", ".bin");
+        try {
+            FitnessFunctionFormat.write(function, file);
+            FitnessFunctionFormatTest.assertSameScores(
+                function, FitnessFunctionFormat.load(file)
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testJavaSerialization() throws IOException, ClassNotFoundException {
+        final TabulatedFitnessFunction<?> function =
+            new CubicFitnessFunction(0.0, 25.0, 50.0).tabulate(
+                0.001, TabulatedFitnessFunction.Interpolation.LINEAR
+            );
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(function);
+        }
+        final Object copy;
+        try (ObjectInputStream input = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = input.readObject();
+        }
+        Assertions.assertEquals(
+            function.evaluateNormalized(12.3),
+            ((FitnessFunction<?>) copy).evaluateNormalized(12.3)
+        );
+    }
+
+    @Test
+    void testUnexpectedSerializedClasses() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new HashMap<String, Double>(1));
+        }
+        final IllegalArgumentException exception = Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromText(
+                String.format(
+                    "fitness 1\nserialized %s\n",
+                    Base64.getEncoder().encodeToString(bytes.toByteArray())
+                )
+            )
+        );
+        Assertions.assertTrue(
+            exception.getCause().getCause() instanceof InvalidClassException
+        );
+    }
+
+    @Test
+    void testInvalidDefinitions() {
+        Assertions.assertThrows(
+            IllegalStateException.class,
+            () -> FitnessFunctionFormat.toBinary(
+                new CompositeFitnessFunction()
+                    .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.5)
+            )
+        );
+        final byte[] bytes = FitnessFunctionFormat.toBinary(
+            FitnessFunctionFormatTest.composite()
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromBinary(
+                Arrays.copyOf(bytes, bytes.length / 2)
+            )
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromBinary(new byte[] {1, 2, 3, 4, 5})
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromText("fitness 1\ncomposite 1 {\n")
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromText("fitness 1\nlinear 0.0 1.0\n")
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> FitnessFunctionFormat.fromText(
+                String.join(
+                    "\n",
+                    "fitness 1",
+                    "composite 2 {",
+                    "  0.9 normalized 0.0 30.0",
+                    "  0.9 normalized 0.0 10.0",
+                    "}",
+                    ""
+                )
+            )
+        );
+    }
+
+    /**
+     * Creates a composite function with every kind of function.
+     * @return A validated composite function
+     */
+    private static CompositeFitnessFunction composite() {
+        return new CompositeFitnessFunction()
+            .withFunction(
+                new CubicFitnessFunction(0.0, 25.0, 50.0).tabulate(
+                    0.0001, TabulatedFitnessFunction.Interpolation.CUBIC
+                ),
+                0.5
+            )
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.3)
+            .withFunction(new FitnessFunctionFormatTest.Square(), 0.2)
+            .validate();
+    }
+
+    /**
+     * Asserts that two functions compute the same scores.
+     * @param expected The original function
+     * @param actual The loaded function
+     */
+    private static void assertSameScores(final FitnessFunction<?> expected,
+        final FitnessFunction<?> actual) {
+        for (double x = 0.0; x <= 50.0; x += 0.25) {
+            Assertions.assertEquals(
+                expected.evaluate(FitnessFunctionFormatTest.ARGS.apply(x)),
+                actual.evaluate(FitnessFunctionFormatTest.ARGS.apply(x))
+            );
+        }
+    }
+
+    /**
+     * A user-defined function, which is stored with Java serialization.
+     */
+    private static final class Square
+        implements FitnessFunction<FitnessFunctionFormatTest.SquareArgument>,
+            Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double evaluate(final double... args) {
+            return args[0] * args[0];
+        }
+
+        @Override
+        public double evaluateNormalized(final double... args) {
+            return this.evaluate(args) / 2500.0;
+        }
+
+        @Override
+        public double evaluate(final FitnessFunction.Argument... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public double evaluateNormalized(final FitnessFunction.Argument... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Class<FitnessFunctionFormatTest.SquareArgument> argumentType() {
+            return FitnessFunctionFormatTest.SquareArgument.class;
+        }
+
+    }
+
+    /**
+     * The argument of {@link FitnessFunctionFormatTest.Square}.
+     */
+    private static final class SquareArgument
+        implements FitnessFunction.Argument {
+
+        /**
+         * The argument values.
+         */
+        private final double[] values;
+
+        /**
+         * Default constructor.
+         * @param values The argument values
+         */
+        SquareArgument(final double... values) {
+            this.values = values;
+        }
+
+        @Override
+        public double[] values() {
+            return this.values.clone();
+        }
+
+    }
+
+}
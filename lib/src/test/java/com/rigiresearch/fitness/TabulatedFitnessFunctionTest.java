@@ -0,0 +1,147 @@
+package com.rigiresearch.fitness;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link TabulatedFitnessFunction}.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+class TabulatedFitnessFunctionTest {
+
+    /**
+     * The requested maximum error.
+     */
+    private static final double TOLERANCE = 0.0001;
+
+    /**
+     * The number of points where the error is checked.
+     */
+    private static final int POINTS = 100_000;
+
+    @Test
+    void testErrorBound() {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 18.0, 24.0);
+        for (final TabulatedFitnessFunction.Interpolation interpolation
+            : TabulatedFitnessFunction.Interpolation.values()) {
+            final TabulatedFitnessFunction<?> table = function.tabulate(
+                TabulatedFitnessFunctionTest.TOLERANCE, interpolation
+            );
+            for (int i = 0; i <= TabulatedFitnessFunctionTest.POINTS; i++) {
+                final double x = 24.0 * i / TabulatedFitnessFunctionTest.POINTS;
+                Assertions.assertEquals(
+                    function.evaluateNormalized(x),
+                    table.evaluateNormalized(x),
+                    TabulatedFitnessFunctionTest.TOLERANCE,
+                    String.format("Should be within the tolerance at %f", x)
+                );
+            }
+        }
+    }
+
+    @Test
+    void testNarrowPart() {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 0.001, 100.0);
+        for (final TabulatedFitnessFunction.Interpolation interpolation
+            : TabulatedFitnessFunction.Interpolation.values()) {
+            final TabulatedFitnessFunction<?> table = function.tabulate(
+                TabulatedFitnessFunctionTest.TOLERANCE, interpolation
+            );
+            Assertions.assertTrue(
+                table.error() <= TabulatedFitnessFunctionTest.TOLERANCE
+            );
+            for (int i = 0; i <= TabulatedFitnessFunctionTest.POINTS; i++) {
+                // Half of the points fall inside the narrow part
+                final int half = TabulatedFitnessFunctionTest.POINTS / 2;
+                final double x;
+                if (i < half) {
+                    x = 0.001 * i / half;
+                } else {
+                    x = 100.0 * (i - half) / half;
+                }
+                Assertions.assertEquals(
+                    function.evaluateNormalized(x),
+                    table.evaluateNormalized(x),
+                    TabulatedFitnessFunctionTest.TOLERANCE,
+                    String.format("Should be within the tolerance at %f", x)
+                );
+            }
+        }
+    }
+
+    @Test
+    void testCubicNeedsFewerIntervals() {
+        final CubicFitnessFunction function =
+            new CubicFitnessFunction(0.0, 25.0, 50.0);
+        Assertions.assertTrue(
+            function.tabulate(
+                TabulatedFitnessFunctionTest.TOLERANCE,
+                TabulatedFitnessFunction.Interpolation.CUBIC
+            ).intervals()
+                < function.tabulate(
+                    TabulatedFitnessFunctionTest.TOLERANCE,
+                    TabulatedFitnessFunction.Interpolation.LINEAR
+                ).intervals()
+        );
+    }
+
+    @Test
+    void testOutsideTheDomain() {
+        final TabulatedFitnessFunction<?> table =
+            new CubicFitnessFunction(0.0, 18.0, 24.0).tabulate(
+                TabulatedFitnessFunctionTest.TOLERANCE,
+                TabulatedFitnessFunction.Interpolation.LINEAR
+            );
+        Assertions.assertEquals(-1.0, table.evaluateNormalized(-1.0));
+        Assertions.assertEquals(-1.0, table.evaluateNormalized(25.0));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, table.evaluate(25.0));
+    }
+
+    @Test
+    void testWithinACompositeFunction() {
+        final CubicFitnessFunction cubic = new CubicFitnessFunction(0.0, 25.0, 50.0);
+        final CompositeFitnessFunction function = new CompositeFitnessFunction()
+            .withFunction(
+                cubic.tabulate(
+                    TabulatedFitnessFunctionTest.TOLERANCE,
+                    TabulatedFitnessFunction.Interpolation.CUBIC
+                ),
+                0.4
+            )
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.6)
+            .validate();
+        Assertions.assertEquals(
+            0.4 * cubic.evaluateNormalized(10.0),
+            function.evaluate(
+                new CubicFitnessFunction.CubicFunctionArgument(10.0),
+                new NormalizedFitnessFunction.NormalizedFunctionArgument(15.0)
+            ),
+            TabulatedFitnessFunctionTest.TOLERANCE
+        );
+    }
+
+    @Test
+    void testInvalidParameters() {
+        final NormalizedFitnessFunction function =
+            new NormalizedFitnessFunction(0.0, 30.0);
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> new TabulatedFitnessFunction<>(
+                function, 30.0, 0.0, 0.1,
+                TabulatedFitnessFunction.Interpolation.LINEAR
+            )
+        );
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> new TabulatedFitnessFunction<>(
+                function, 0.0, 30.0, 0.0,
+                TabulatedFitnessFunction.Interpolation.LINEAR
+            )
+        );
+    }
+
+}
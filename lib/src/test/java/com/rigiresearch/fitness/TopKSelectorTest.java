@@ -0,0 +1,106 @@
+package com.rigiresearch.fitness;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link TopKSelector}.
+ * @author Miguel Jimenez (miguel@uvic.ca)
+ * @version $Id$
+ * @since 0.2.0
+ */
+class TopKSelectorTest {
+
+    @Test
+    void testMatchesAFullSort() {
+        final Random random = new Random(42L);
+        final double[] scores = new double[100_000];
+        for (int i = 0; i < scores.length; i++) {
+            // Few distinct values to exercise the tie breaking
+            scores[i] = random.nextInt(1000);
+        }
+        final TopKSelector selector = new TopKSelector(50);
+        IntStream.range(0, scores.length)
+            .parallel()
+            .forEach(i -> selector.offer(i, scores[i]));
+        final TopKSelector.Selection selection = selector.select();
+        final int[] expected = IntStream.range(0, scores.length)
+            .boxed()
+            .sorted(
+                Comparator.<Integer>comparingDouble(i -> -scores[i])
+                    .thenComparingInt(i -> i)
+            )
+            .limit(50L)
+            .mapToInt(Integer::intValue)
+            .toArray();
+        Assertions.assertArrayEquals(expected, selection.indices());
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(scores[expected[i]], selection.scores()[i]);
+        }
+    }
+
+    @Test
+    void testOutOfRangeScoresAreRejected() {
+        final double[][] rows = {{-1.0}, {10.0}, {25.0}, {5.0}, {20.0}, {21.0}};
+        final TopKSelector.Selection selection = TopKSelector.select(
+            10, new CubicFitnessFunction(0.0, 10.0, 20.0), rows
+        );
+        Assertions.assertArrayEquals(new int[] {3, 1, 4}, selection.indices());
+        Assertions.assertEquals(3L, selection.rejected());
+    }
+
+    @Test
+    void testCompositeFunction() {
+        final CompositeFitnessFunction function = new CompositeFitnessFunction()
+            .withFunction(new CubicFitnessFunction(0.0, 25.0, 50.0), 0.4)
+            .withFunction(new NormalizedFitnessFunction(0.0, 30.0), 0.6)
+            .validate();
+        final FitnessFunction.Argument[][] rows = new FitnessFunction.Argument[31][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new FitnessFunction.Argument[] {
+                new CubicFitnessFunction.CubicFunctionArgument(i),
+                new NormalizedFitnessFunction.NormalizedFunctionArgument(i)
+            };
+        }
+        final TopKSelector.Selection selection =
+            TopKSelector.select(3, function, rows);
+        Assertions.assertEquals(3, selection.size());
+        for (int i = 0; i < selection.size(); i++) {
+            Assertions.assertEquals(
+                function.evaluate(rows[selection.indices()[i]]),
+                selection.scores()[i]
+            );
+        }
+        for (final FitnessFunction.Argument[] row : rows) {
+            Assertions.assertTrue(
+                function.evaluate(row) <= selection.scores()[0]
+            );
+        }
+    }
+
+    @Test
+    void testFewerCandidatesThanSize() {
+        final TopKSelector selector = new TopKSelector(5);
+        selector.offer(7, 0.5);
+        selector.offer(3, 0.9);
+        final TopKSelector.Selection selection = selector.select();
+        Assertions.assertEquals(2, selection.size());
+        Assertions.assertTrue(
+            Arrays.equals(new int[] {3, 7}, selection.indices()),
+            "Should be sorted from best to worst"
+        );
+    }
+
+    @Test
+    void testInvalidSize() {
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> new TopKSelector(0)
+        );
+    }
+
+}